@@ -0,0 +1,213 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+import com.krillbrowser.AdvancedSecurityManager;
+import com.krillbrowser.BrowserProfile;
+import com.krillbrowser.NavigationPolicy;
+import com.krillbrowser.PhishingDetector;
+import com.krillbrowser.RequestType;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * AllocationBudgetCheck - Fails when a policy check starts allocating more
+ *
+ * Each check is warmed up (so the JIT's escape analysis has run), then
+ * called many times under a Flight Recorder recording with
+ * jdk.ObjectAllocationSample enabled. Every sample carries the bytes its
+ * thread allocated since the previous one; samples whose stack passes
+ * through the checked method are summed and divided by the number of calls.
+ * That matches the thread's exact allocation counter to within a few percent.
+ *
+ * The result is compared with allocation-budgets.properties (bytes per
+ * call). The process exits with status 1 if any check is over budget, so a
+ * build can run it as a gate. Only the managers are loaded: no JavaFX, no
+ * CEF, no display.
+ *
+ * Usage: java -cp benchmarks.jar com.krillbrowser.benchmarks.AllocationBudgetCheck
+ * --budgets file compare against this file instead of the built-in one
+ * --update file write the measured values (plus headroom) as new budgets
+ */
+public final class AllocationBudgetCheck {
+
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int MEASURED_CALLS = 500_000;
+
+    // New budgets leave room for sampling noise
+    private static final double HEADROOM = 1.25;
+    private static final long MIN_NONZERO_BUDGET = 16;
+
+    /**
+     * One checked call: the method it enters and the loop that drives it
+     */
+    private static final class Check {
+        final String name;
+        final String className;
+        final String methodName;
+        final IntConsumer call;
+
+        Check(String name, Class<?> type, String methodName, IntConsumer call) {
+            this.name = name;
+            this.className = type.getName();
+            this.methodName = methodName;
+            this.call = call;
+        }
+    }
+
+    private AllocationBudgetCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        Path dataDir = BenchmarkData.isolateHome();
+        int failures;
+        try {
+            failures = run(dataDir, options);
+        } finally {
+            BenchmarkData.deleteHome();
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static int run(Path dataDir, Map<String, String> options) throws Exception {
+        String[] trackers = BenchmarkData.domains(10_000, 80);
+        BenchmarkData.writeLines(dataDir.resolve("blocklist.txt"), trackers);
+        String[] urls = BenchmarkData.urls(trackers, 25, 81);
+        int mask = urls.length - 1;
+
+        AdvancedSecurityManager security = AdvancedSecurityManager.getInstance();
+        PhishingDetector phishing = PhishingDetector.getInstance();
+        BrowserProfile profile = BrowserProfile.getInstance();
+        NavigationPolicy policy = NavigationPolicy.getInstance();
+        String untouched = "https://news.example.com/article/2024/05/story?id=42&page=2#comments";
+        String page = "https://news.example.com/article/2024/05/story";
+
+        List<Check> checks = List.of(
+                new Check("cleanUrl.untouched", AdvancedSecurityManager.class, "cleanUrl",
+                        i -> security.cleanUrl(untouched)),
+                new Check("cleanUrl", AdvancedSecurityManager.class, "cleanUrl",
+                        i -> security.cleanUrl(urls[i & mask])),
+                new Check("shouldBlockRequest", AdvancedSecurityManager.class, "shouldBlockRequest",
+                        i -> security.shouldBlockRequest(urls[i & mask], page, RequestType.SCRIPT)),
+                new Check("phishing.checkUrl", PhishingDetector.class, "checkUrl",
+                        i -> phishing.checkUrl(urls[i & mask])),
+                new Check("profile.shouldBlockSite", BrowserProfile.class, "shouldBlockSite",
+                        i -> profile.shouldBlockSite(urls[i & mask])),
+                new Check("navigation.evaluate", NavigationPolicy.class, "evaluate",
+                        i -> policy.evaluate(urls[i & mask])));
+
+        Properties budgets = loadBudgets(options.get("budgets"));
+        Properties measuredBudgets = new Properties();
+        int failures = 0;
+
+        System.out.printf("%-26s %12s %12s  %s%n", "check", "B/call", "budget", "");
+        for (Check check : checks) {
+            double bytesPerCall = measure(check);
+            String budgetText = budgets.getProperty(check.name);
+            String verdict;
+            if (budgetText == null) {
+                verdict = "no budget";
+            } else if (bytesPerCall > Long.parseLong(budgetText.trim())) {
+                verdict = "OVER BUDGET";
+                failures++;
+            } else {
+                verdict = "ok";
+            }
+            System.out.printf("%-26s %12.1f %12s  %s%n", check.name, bytesPerCall,
+                    budgetText != null ? budgetText.trim() : "-", verdict);
+
+            long newBudget = bytesPerCall == 0 ? 0
+                    : Math.max(MIN_NONZERO_BUDGET, (long) Math.ceil(bytesPerCall * HEADROOM));
+            measuredBudgets.setProperty(check.name, Long.toString(newBudget));
+        }
+
+        if (options.containsKey("update")) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(options.get("update")))) {
+                measuredBudgets.store(out, "Bytes allocated per call, measured with JFR plus "
+                        + Math.round((HEADROOM - 1) * 100) + "% headroom");
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Bytes allocated per call, attributed through JFR allocation samples
+     */
+    private static double measure(Check check) throws IOException {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            check.call.accept(i);
+        }
+
+        Path file = Files.createTempFile("krill-alloc", ".jfr");
+        long weight = 0;
+        long threadId = Thread.currentThread().getId();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "1000/ms").withStackTrace();
+            recording.start();
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                check.call.accept(i);
+            }
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> samples = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getThread("eventThread") != null
+                        && event.getThread("eventThread").getJavaThreadId() == threadId) {
+                    samples.add(event);
+                }
+            }
+            // The first sample's weight also covers what was allocated
+            // before the recording started (the warm-up), so skip it
+            samples.sort(Comparator.comparing(RecordedEvent::getStartTime));
+            for (RecordedEvent event : samples.subList(Math.min(1, samples.size()), samples.size())) {
+                if (passesThrough(event.getStackTrace(), check)) {
+                    weight += event.getLong("weight");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return (double) weight / MEASURED_CALLS;
+    }
+
+    private static boolean passesThrough(RecordedStackTrace stackTrace, Check check) {
+        if (stackTrace == null)
+            return false;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.getMethod().getName().equals(check.methodName)
+                    && frame.getMethod().getType().getName().equals(check.className))
+                return true;
+        }
+        return false;
+    }
+
+    private static Properties loadBudgets(String file) throws IOException {
+        Properties budgets = new Properties();
+        if (file != null) {
+            try (Reader in = Files.newBufferedReader(Paths.get(file))) {
+                budgets.load(in);
+            }
+        } else {
+            try (InputStream in = AllocationBudgetCheck.class.getResourceAsStream("/allocation-budgets.properties")) {
+                if (in == null)
+                    throw new FileNotFoundException("allocation-budgets.properties is not on the classpath");
+                budgets.load(in);
+            }
+        }
+        return budgets;
+    }
+}
@@ -0,0 +1,134 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * BenchmarkData - Synthetic rule lists and URL corpora for the benchmarks
+ *
+ * Everything is generated from a fixed seed, so two runs (or two versions of
+ * the browser) see exactly the same rules and requests. Each benchmark fork
+ * gets its own temporary user.home: the managers are singletons that load
+ * their lists from ~/.krillbrowser the first time they are used, so the
+ * files are written there before the first getInstance().
+ */
+public final class BenchmarkData {
+
+    // Requests cycled through by each thread; larger than a VerdictCache, so
+    // the big rule sets are measured with real misses, not only cache hits
+    static final int CORPUS_SIZE = 1 << 13;
+
+    private static final String[] WORDS = {
+            "cloud", "pixel", "metric", "beacon", "track", "stat", "media", "cdn",
+            "ads", "click", "serve", "sync", "tag", "data", "insight", "promo",
+            "shop", "news", "mail", "photo", "video", "game", "travel", "bank"
+    };
+    private static final String[] TLDS = { "com", "net", "org", "io", "co.uk", "de", "info" };
+    private static final String[] PATHS = {
+            "/", "/index.html", "/js/app.js", "/css/site.css", "/img/logo.png",
+            "/api/v1/items", "/collect", "/watch", "/article/2024/05/story"
+    };
+    private static final String[] QUERIES = {
+            "", "?id=42", "?q=krill+browser&page=2",
+            "?utm_source=newsletter&utm_medium=email&utm_campaign=spring&id=7",
+            "?fbclid=IwAR0abcdef&ref=share", "?gclid=Cj0KCQ&lang=en"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Point user.home at a fresh temporary directory and return its data dir
+     */
+    static Path isolateHome() throws IOException {
+        Path home = Files.createTempDirectory("krill-bench");
+        System.setProperty("user.home", home.toString());
+        Path dataDir = home.resolve(".krillbrowser");
+        Files.createDirectories(dataDir);
+        return dataDir;
+    }
+
+    static void deleteHome() throws IOException {
+        Path home = Paths.get(System.getProperty("user.home"));
+        if (!home.getFileName().toString().startsWith("krill-bench"))
+            return;
+        try (var paths = Files.walk(home)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * count distinct lowercase domains, e.g. "beacon-sync41.net"
+     */
+    static String[] domains(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> domains = new LinkedHashSet<>(count * 2);
+        while (domains.size() < count) {
+            domains.add(WORDS[random.nextInt(WORDS.length)] + "-" + WORDS[random.nextInt(WORDS.length)]
+                    + random.nextInt(100_000) + "." + TLDS[random.nextInt(TLDS.length)]);
+        }
+        return domains.toArray(new String[0]);
+    }
+
+    /**
+     * One entry per line, as the managers' text files are stored
+     */
+    static void writeLines(Path file, String[] lines) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Request URLs where about hitPercent of the hosts (or their subdomains)
+     * appear in listed, and the rest come from an unrelated pool of sites
+     */
+    static String[] urls(String[] listed, int hitPercent, long seed) {
+        Random random = new Random(seed);
+        String[] sites = domains(2_000, seed + 1);
+        String[] urls = new String[CORPUS_SIZE];
+        for (int i = 0; i < urls.length; i++) {
+            String host;
+            if (listed.length > 0 && random.nextInt(100) < hitPercent) {
+                host = listed[random.nextInt(listed.length)];
+                if (random.nextBoolean())
+                    host = "www." + host;
+            } else {
+                host = sites[random.nextInt(sites.length)];
+            }
+            urls[i] = (random.nextInt(10) == 0 ? "http://" : "https://") + host
+                    + PATHS[random.nextInt(PATHS.length)] + QUERIES[random.nextInt(QUERIES.length)];
+        }
+        return urls;
+    }
+
+    /**
+     * Per-thread position in a corpus, so threads walk it independently.
+     * Threads start evenly spread by their index, the same way every run.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup(Level.Trial)
+        public void start(ThreadParams thread) {
+            next = (int) ((long) thread.getThreadIndex() * CORPUS_SIZE / thread.getThreadCount());
+        }
+
+        String next(String[] corpus) {
+            next = (next + 1) & (CORPUS_SIZE - 1);
+            return corpus[next];
+        }
+    }
+}
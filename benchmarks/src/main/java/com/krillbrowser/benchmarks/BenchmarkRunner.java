@@ -0,0 +1,64 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkRunner - Runs the benchmarks once per thread count
+ *
+ * Every run has the GC profiler on (allocation per operation, GC counts)
+ * and writes its results as JSON to
+ * target/jmh/results-<threads>t.json, ready to compare between versions.
+ *
+ * Usage: java -jar benchmarks.jar [benchmark regex]
+ * Thread counts: krill.bench.threads (default "1,2,4,<cores>").
+ * Output directory: krill.bench.out (default target/jmh).
+ *
+ * For one-off runs the plain JMH command line works as well:
+ * java -cp benchmarks.jar org.openjdk.jmh.Main Blocklist -t 4 -prof gc -rf json
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : "com\\.krillbrowser\\.benchmarks\\..*";
+        Path out = Paths.get(System.getProperty("krill.bench.out", "target/jmh"));
+        Files.createDirectories(out);
+
+        for (int threads : threadCounts(System.getProperty("krill.bench.threads"))) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(out.resolve("results-" + threads + "t.json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * Comma-separated thread counts, or 1, 2, 4 and the core count
+     */
+    static SortedSet<Integer> threadCounts(String configured) {
+        SortedSet<Integer> counts = new TreeSet<>();
+        if (configured == null) {
+            counts.addAll(List.of(1, 2, 4, Runtime.getRuntime().availableProcessors()));
+        } else {
+            for (String count : configured.split(",")) {
+                counts.add(Integer.parseInt(count.trim()));
+            }
+        }
+        return counts;
+    }
+}
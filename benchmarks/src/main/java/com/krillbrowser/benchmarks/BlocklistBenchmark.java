@@ -0,0 +1,72 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.AdvancedSecurityManager;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BlocklistBenchmark - AdvancedSecurityManager.shouldBlockUrl at list scale
+ *
+ * blocklist.txt holds ruleCount synthetic tracker domains; a quarter of the
+ * requested URLs hit one of them (or a subdomain), the rest are clean.
+ *
+ * The readWrite group runs three checking threads against one thread that
+ * keeps adding and removing a rule: with copy-on-write rule sets the
+ * readers' throughput should not drop while the writer publishes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class BlocklistBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Rules {
+        @Param({ "1000", "100000", "1000000" })
+        int ruleCount;
+
+        AdvancedSecurityManager manager;
+        String[] urls;
+        List<String> toggled = List.of("benchmark-writer.example");
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Path dataDir = BenchmarkData.isolateHome();
+            String[] domains = BenchmarkData.domains(ruleCount, 10);
+            BenchmarkData.writeLines(dataDir.resolve("blocklist.txt"), domains);
+            manager = AdvancedSecurityManager.getInstance();
+            urls = BenchmarkData.urls(domains, 25, 11);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkData.deleteHome();
+        }
+    }
+
+    @Benchmark
+    public boolean shouldBlockUrl(Rules rules, BenchmarkData.Cursor cursor) {
+        return rules.manager.shouldBlockUrl(cursor.next(rules.urls));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public boolean readWriteCheck(Rules rules, BenchmarkData.Cursor cursor) {
+        return rules.manager.shouldBlockUrl(cursor.next(rules.urls));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWriteEdit(Rules rules) {
+        rules.manager.addToBlocklist(rules.toggled);
+        rules.manager.removeFromBlocklist(rules.toggled);
+    }
+}
@@ -0,0 +1,50 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.AdvancedSecurityManager;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CleanUrlBenchmark - Tracking-parameter removal
+ *
+ * cleanUrlUntouched should report gc.alloc.rate.norm = 0 B/op: a URL without
+ * tracking parameters is returned as-is. cleanUrlMixed runs the generated
+ * corpus, where some queries carry utm_*, fbclid or gclid parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CleanUrlBenchmark {
+
+    AdvancedSecurityManager manager;
+    String[] urls;
+    String untouched = "https://news.example.com/article/2024/05/story?id=42&page=2#comments";
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.isolateHome();
+        manager = AdvancedSecurityManager.getInstance();
+        urls = BenchmarkData.urls(new String[0], 0, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteHome();
+    }
+
+    @Benchmark
+    public String cleanUrlUntouched() {
+        return manager.cleanUrl(untouched);
+    }
+
+    @Benchmark
+    public String cleanUrlMixed(BenchmarkData.Cursor cursor) {
+        return manager.cleanUrl(cursor.next(urls));
+    }
+}
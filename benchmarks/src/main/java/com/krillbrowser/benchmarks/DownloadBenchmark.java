@@ -0,0 +1,48 @@
+package com.krillbrowser.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.DownloadSecurity;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * DownloadBenchmark - DownloadSecurity.checkDownload over safe, archive,
+ * executable and double-extension file names
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+    private static final String[] NAMES = {
+            "report", "invoice", "photo", "setup", "song", "archive", "slides", "data"
+    };
+    private static final String[] EXTENSIONS = {
+            ".pdf", ".docx", ".jpg", ".png", ".mp3", ".csv", ".txt",
+            ".zip", ".tar.gz", ".iso",
+            ".exe", ".msi", ".sh", ".jar", ".dmg",
+            ".pdf.exe", ".jpg.js", ".docx.scr"
+    };
+
+    String[] fileNames = new String[BenchmarkData.CORPUS_SIZE];
+    String url = "https://downloads.example.com/files/latest";
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(50);
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = NAMES[random.nextInt(NAMES.length)] + "-" + random.nextInt(1000)
+                    + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        }
+    }
+
+    @Benchmark
+    public DownloadSecurity.DownloadResult checkDownload(BenchmarkData.Cursor cursor) {
+        return DownloadSecurity.getInstance().checkDownload(cursor.next(fileNames), url);
+    }
+}
@@ -0,0 +1,63 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.PhishingDetector;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PhishingBenchmark - PhishingDetector.checkUrl with ruleCount known
+ * phishing domains
+ *
+ * The corpus mixes known phishing domains, brand lookalikes
+ * ("paypa1-secure.com"), suspicious paths ("/login/verify") and clean URLs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class PhishingBenchmark {
+
+    private static final String[] LOOKALIKES = {
+            "https://paypa1-secure.com/signin", "https://g00gle-accounts.net/",
+            "https://amaz0n-orders.info/track", "https://secure-appleid-verify.com/",
+            "https://example.com/login/verify?session=1", "https://bank.example.org/account/suspended"
+    };
+
+    @Param({ "1000", "100000", "1000000" })
+    int ruleCount;
+
+    PhishingDetector detector;
+    String[] urls;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.isolateHome();
+        detector = PhishingDetector.getInstance();
+        String[] domains = BenchmarkData.domains(ruleCount, 30);
+        for (String domain : domains) {
+            detector.addPhishingDomain(domain);
+        }
+
+        urls = BenchmarkData.urls(domains, 10, 31);
+        Random random = new Random(32);
+        for (int i = 0; i < urls.length; i += 10) {
+            urls[i] = LOOKALIKES[random.nextInt(LOOKALIKES.length)];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteHome();
+    }
+
+    @Benchmark
+    public PhishingDetector.PhishingResult checkUrl(BenchmarkData.Cursor cursor) {
+        return detector.checkUrl(cursor.next(urls));
+    }
+}
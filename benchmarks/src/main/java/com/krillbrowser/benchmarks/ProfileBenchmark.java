@@ -0,0 +1,53 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.BrowserProfile;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ProfileBenchmark - BrowserProfile.shouldBlockSite with ruleCount blocked
+ * sites in the current profile, a tenth of them path rules
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ProfileBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int ruleCount;
+
+    BrowserProfile profiles;
+    String[] urls;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.isolateHome();
+        profiles = BrowserProfile.getInstance();
+        String[] domains = BenchmarkData.domains(ruleCount, 40);
+        String[] sites = domains.clone();
+        for (int i = 0; i < sites.length; i += 10) {
+            sites[i] = sites[i] + "/watch";
+        }
+        profiles.getCurrentSettings().blockedSites.addAll(Arrays.asList(sites));
+        // Switching recompiles the site rules
+        profiles.switchProfile(profiles.getCurrentProfile());
+        urls = BenchmarkData.urls(domains, 25, 41);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteHome();
+    }
+
+    @Benchmark
+    public boolean shouldBlockSite(BenchmarkData.Cursor cursor) {
+        return profiles.shouldBlockSite(cursor.next(urls));
+    }
+}
@@ -0,0 +1,203 @@
+package com.krillbrowser.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import com.krillbrowser.AdvancedSecurityManager;
+import com.krillbrowser.LatencyHistogram;
+import com.krillbrowser.NavigationPolicy;
+import com.krillbrowser.NavigationTimings;
+
+/**
+ * ReplayHarness - Replays page loads through the whole policy chain from
+ * N threads at once
+ *
+ * Navigations go through NavigationPolicy.evaluate (HTTPS upgrade, cleanUrl,
+ * profile rules, blocklists, phishing checks), subresources through
+ * AdvancedSecurityManager.shouldBlockRequest, exactly as the front-ends
+ * call them. Each thread starts at a different page of the corpus.
+ *
+ * For every thread count it reports throughput, its speed-up over one
+ * thread, per-request latency percentiles and allocation per request, then
+ * the per-stage NavigationTimings of the whole run. A speed-up that stops
+ * growing with the thread count marks where the chain stops scaling; the
+ * stage timings show which check it is.
+ *
+ * Usage: java -cp benchmarks.jar com.krillbrowser.benchmarks.ReplayHarness
+ * --threads 1,2,4,8 thread counts (default 1,2,4,<cores>)
+ * --seconds 10 measured time per thread count
+ * --warmup 5 warm-up seconds before the first count
+ * --pages 2000 pages to generate
+ * --rules 100000 blocklist size to generate
+ * --corpus file replay this corpus instead of generating one
+ * --save file write the generated corpus to a file
+ */
+public final class ReplayHarness {
+
+    private final List<UrlCorpus.Request> corpus;
+    private final int[] pageStarts;
+    private final NavigationPolicy policy;
+    private final AdvancedSecurityManager security;
+
+    private ReplayHarness(List<UrlCorpus.Request> corpus) {
+        this.corpus = corpus;
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            if (corpus.get(i).isNavigation())
+                starts.add(i);
+        }
+        pageStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        policy = NavigationPolicy.getInstance();
+        security = AdvancedSecurityManager.getInstance();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int pages = Integer.parseInt(options.getOrDefault("pages", "2000"));
+        int rules = Integer.parseInt(options.getOrDefault("rules", "100000"));
+
+        // A private home with a generated blocklist, so runs are repeatable
+        // and never touch the real profile
+        Path dataDir = BenchmarkData.isolateHome();
+        String[] trackers = BenchmarkData.domains(rules, 10);
+        BenchmarkData.writeLines(dataDir.resolve("blocklist.txt"), trackers);
+
+        List<UrlCorpus.Request> corpus;
+        if (options.containsKey("corpus")) {
+            corpus = UrlCorpus.read(Paths.get(options.get("corpus")));
+        } else {
+            corpus = UrlCorpus.generate(pages, trackers, 70);
+            if (options.containsKey("save")) {
+                UrlCorpus.write(Paths.get(options.get("save")), corpus);
+            }
+        }
+
+        try {
+            ReplayHarness harness = new ReplayHarness(corpus);
+            System.out.printf("Corpus: %d requests, %d pages; blocklist: %d rules%n",
+                    corpus.size(), harness.pageStarts.length, rules);
+
+            harness.run(Runtime.getRuntime().availableProcessors(), warmup);
+            NavigationTimings.reset();
+
+            System.out.printf("%n%8s %14s %9s %10s %10s %10s %10s %10s %10s%n", "threads", "requests/s", "speed-up",
+                    "p50 us", "p99 us", "p999 us", "max us", "B/request", "MB/s");
+            double baseline = 0;
+            for (int threads : BenchmarkRunner.threadCounts(options.get("threads"))) {
+                Result result = harness.run(threads, seconds);
+                if (baseline == 0)
+                    baseline = result.throughput() / threads;
+                LatencyHistogram.Snapshot latency = result.latency.snapshot();
+                System.out.printf("%8d %14.0f %8.2fx %10.2f %10.2f %10.2f %10.2f %10.0f %10.1f%n", threads,
+                        result.throughput(), result.throughput() / baseline, latency.getP50() / 1000.0,
+                        latency.getP99() / 1000.0, latency.getP999() / 1000.0, latency.getMax() / 1000.0,
+                        (double) result.allocatedBytes / result.requests,
+                        result.allocatedBytes / result.seconds / (1024 * 1024));
+            }
+
+            System.out.println();
+            System.out.print(NavigationTimings.report());
+        } finally {
+            BenchmarkData.deleteHome();
+        }
+    }
+
+    /**
+     * Replay from threads threads for the given time
+     */
+    private Result run(int threads, int seconds) throws InterruptedException {
+        LatencyHistogram[] latencies = new LatencyHistogram[threads];
+        long[] requests = new long[threads];
+        long[] allocated = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            latencies[t] = new LatencyHistogram();
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long allocatedBefore = allocatedBytes();
+                int next = pageStarts[(int) ((long) worker * pageStarts.length / threads)];
+                long count = 0;
+                LatencyHistogram latency = latencies[worker];
+                while ((count & 63) != 0 || System.nanoTime() < deadline[0]) {
+                    UrlCorpus.Request request = corpus.get(next);
+                    long before = System.nanoTime();
+                    if (request.isNavigation()) {
+                        policy.evaluate(request.url);
+                    } else {
+                        security.shouldBlockRequest(request.url, request.documentUrl, request.type);
+                    }
+                    latency.record(System.nanoTime() - before);
+                    count++;
+                    if (++next == corpus.size())
+                        next = 0;
+                }
+                requests[worker] = count;
+                allocated[worker] = allocatedBytes() - allocatedBefore;
+            }, "replay-" + t);
+            workers[t].start();
+        }
+
+        long began = System.nanoTime();
+        deadline[0] = began + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Result result = new Result((System.nanoTime() - began) / 1e9);
+        for (int t = 0; t < threads; t++) {
+            result.latency.add(latencies[t]);
+            result.requests += requests[t];
+            result.allocatedBytes += allocated[t];
+        }
+        return result;
+    }
+
+    /**
+     * Bytes allocated by the current thread so far (HotSpot), or 0
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static final class Result {
+        final double seconds;
+        final LatencyHistogram latency = new LatencyHistogram();
+        long requests;
+        long allocatedBytes;
+
+        Result(double seconds) {
+            this.seconds = seconds;
+        }
+
+        double throughput() {
+            return requests / seconds;
+        }
+    }
+}
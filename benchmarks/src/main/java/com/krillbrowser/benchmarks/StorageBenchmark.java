@@ -0,0 +1,74 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import com.krillbrowser.CookieManager;
+import com.krillbrowser.HistoryManager;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * StorageBenchmark - HistoryManager.addToHistory and CookieManager.setCookie
+ *
+ * Both managers rewrite their whole file on every change, so the cost grows
+ * with what is already stored: cookies.txt starts with storedEntries
+ * cookies, history.txt with a full history (it is capped at 1000 entries).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    @Param({ "1000", "100000" })
+    int storedEntries;
+
+    CookieManager cookies;
+    HistoryManager history;
+    String[] urls;
+    String[] domains;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dataDir = BenchmarkData.isolateHome();
+
+        domains = BenchmarkData.domains(BenchmarkData.CORPUS_SIZE, 60);
+        String[] cookieLines = new String[storedEntries];
+        for (int i = 0; i < cookieLines.length; i++) {
+            cookieLines[i] = domains[i % domains.length] + "|session" + i + "|" + Long.toHexString(i * 0x9E3779B97F4AL);
+        }
+        BenchmarkData.writeLines(dataDir.resolve("cookies.txt"), cookieLines);
+
+        urls = BenchmarkData.urls(domains, 50, 61);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        String[] historyLines = new String[1000];
+        for (int i = 0; i < historyLines.length; i++) {
+            historyLines[i] = timestamp + "|" + urls[i];
+        }
+        BenchmarkData.writeLines(dataDir.resolve("history.txt"), historyLines);
+
+        cookies = CookieManager.getInstance();
+        history = HistoryManager.getInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteHome();
+    }
+
+    @Benchmark
+    public void setCookie(BenchmarkData.Cursor cursor) {
+        cookies.setCookie(cursor.next(domains), "session", "abc123");
+    }
+
+    @Benchmark
+    public void addToHistory(BenchmarkData.Cursor cursor) {
+        history.addToHistory(cursor.next(urls));
+    }
+}
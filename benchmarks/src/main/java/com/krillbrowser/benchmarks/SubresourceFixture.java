@@ -0,0 +1,214 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * SubresourceFixture - Local test page for SubresourceBlocker in the
+ * Chromium edition
+ *
+ * Serves one page on page.localhost that loads every kind of subresource
+ * twice: once from page.localhost (the control) and once from
+ * tracker.localhost (which should be blocked). Chromium resolves *.localhost
+ * to the loopback address, so both hosts reach this server and no DNS or
+ * hosts-file setup is needed. The server records which requests arrive;
+ * three seconds after loading, the page shows per type whether the tracker
+ * request was blocked, got through, or was never made at all (the control
+ * did not arrive either, so that type was not exercised).
+ *
+ * Favicons (one per page, so no control is possible) and workers (which
+ * must be same-origin) are not covered.
+ *
+ * Usage:
+ * echo tracker.localhost >> ~/.krillbrowser/blocklist.txt
+ * java benchmarks/src/main/java/com/krillbrowser/benchmarks/SubresourceFixture.java [--port 8765]
+ * ./run-chromium.sh, then open http://page.localhost:8765/
+ */
+public final class SubresourceFixture {
+
+    private static final String PAGE_HOST = "page.localhost";
+    private static final String TRACKER_HOST = "tracker.localhost";
+    private static final long REPORT_DELAY_MILLIS = 3000;
+
+    // 1x1 transparent GIF
+    private static final byte[] PIXEL = Base64.getDecoder().decode("R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7");
+
+    /**
+     * One subresource type: the CEF resource type it should arrive as and
+     * the markup that loads it from {base}
+     */
+    private static final class Item {
+        final String name;
+        final String resourceType;
+        final String markup;
+
+        Item(String name, String resourceType, String markup) {
+            this.name = name;
+            this.resourceType = resourceType;
+            this.markup = markup;
+        }
+    }
+
+    private static final List<Item> ITEMS = Arrays.asList(
+            new Item("script", "RT_SCRIPT", "<script src=\"{base}/t/script\"></script>"),
+            new Item("stylesheet", "RT_STYLESHEET", "<link rel=\"stylesheet\" href=\"{base}/t/stylesheet\">"),
+            new Item("image", "RT_IMAGE", "<img src=\"{base}/t/image\" width=\"1\" height=\"1\" alt=\"\">"),
+            new Item("font", "RT_FONT_RESOURCE", "<style>@font-face { font-family: f-{id}; src: url({base}/t/font); }</style>"
+                    + "<span style=\"font-family: f-{id}\">font</span>"),
+            new Item("media", "RT_MEDIA", "<video src=\"{base}/t/media\" preload=\"auto\" muted width=\"1\" height=\"1\"></video>"),
+            new Item("subdocument", "RT_SUB_FRAME", "<iframe src=\"{base}/t/subdocument\" width=\"1\" height=\"1\"></iframe>"),
+            new Item("xhr", "RT_XHR", "<script>fetch(\"{base}/t/xhr\", { mode: \"no-cors\" }).catch(() => {});</script>"),
+            new Item("ping", "RT_PING", "<script>navigator.sendBeacon(\"{base}/t/ping\", \"x\");</script>"),
+            new Item("websocket", "(ws:// URL)", "<script>try { new WebSocket(\"{wsbase}/t/websocket\"); } catch (e) {}</script>"),
+            // No markup: the page's policy refuses its image from other.localhost
+            // and reports that to both report-uris
+            new Item("csp-report", "RT_CSP_REPORT", ""));
+
+    private final int port;
+    private final Set<String> received = ConcurrentHashMap.newKeySet();
+
+    private SubresourceFixture(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8765;
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].equals("--port") || i + 1 == args.length)
+                throw new IllegalArgumentException("Expected --port number, got " + args[i]);
+            port = Integer.parseInt(args[++i]);
+        }
+
+        Path blocklist = Paths.get(System.getProperty("user.home"), ".krillbrowser", "blocklist.txt");
+        if (!Files.exists(blocklist) || !Files.readAllLines(blocklist).contains(TRACKER_HOST)) {
+            System.out.println("Note: " + blocklist + " has no " + TRACKER_HOST + " line; add it before starting"
+                    + " the browser or every tracker request will get through.");
+        }
+
+        SubresourceFixture fixture = new SubresourceFixture(port);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", fixture::handle);
+        server.start();
+        System.out.println("Open http://" + PAGE_HOST + ":" + port + "/ in the Chromium edition");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        host = host == null ? "" : host.replaceFirst(":\\d+$", "").toLowerCase();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            if (path.startsWith("/t/")) {
+                received.add(host + path);
+                System.out.println(exchange.getRequestMethod() + " " + host + path
+                        + (host.equals(TRACKER_HOST) ? "  <- should have been blocked" : ""));
+                serveResource(exchange, path.substring(3));
+            } else if (path.equals("/") && host.equals(PAGE_HOST)) {
+                received.clear();
+                Map<String, String> headers = Map.of("Content-Security-Policy",
+                        "img-src 'self' http://" + TRACKER_HOST + ":" + port + "; report-uri "
+                                + base("http", PAGE_HOST) + "/t/csp-report " + base("http", TRACKER_HOST) + "/t/csp-report");
+                send(exchange, 200, "text/html", page().getBytes(StandardCharsets.UTF_8), headers);
+            } else if (path.equals("/report")) {
+                send(exchange, 200, "text/plain", report().getBytes(StandardCharsets.UTF_8), Map.of());
+            } else {
+                send(exchange, 404, "text/plain", new byte[0], Map.of());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveResource(HttpExchange exchange, String name) throws IOException {
+        switch (name) {
+            case "script":
+                send(exchange, 200, "text/javascript", new byte[0], Map.of());
+                break;
+            case "stylesheet":
+                send(exchange, 200, "text/css", new byte[0], Map.of());
+                break;
+            case "image":
+                send(exchange, 200, "image/gif", PIXEL, Map.of());
+                break;
+            case "subdocument":
+                send(exchange, 200, "text/html", "<p>frame</p>".getBytes(StandardCharsets.UTF_8), Map.of());
+                break;
+            case "csp-report":
+            case "ping":
+                send(exchange, 204, "text/plain", new byte[0], Map.of());
+                break;
+            default:
+                // Fonts, media and the WebSocket handshake only need to arrive
+                send(exchange, 404, "text/plain", new byte[0], Map.of());
+                break;
+        }
+    }
+
+    private String page() {
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<!DOCTYPE html>\n<html><head><title>Subresource blocking fixture</title></head><body>\n");
+        html.append("<h1>Subresource blocking fixture</h1>\n<pre id=\"report\">Loading...</pre>\n");
+        int id = 0;
+        for (Item item : ITEMS) {
+            if (item.markup.isEmpty())
+                continue;
+            for (String host : new String[] { PAGE_HOST, TRACKER_HOST }) {
+                html.append(item.markup.replace("{base}", base("http", host)).replace("{wsbase}", base("ws", host))
+                        .replace("{id}", Integer.toString(id++))).append('\n');
+            }
+        }
+        html.append("<img src=\"http://other.localhost:").append(port).append("/t/csp-violation\" alt=\"\">\n");
+        html.append("<script>\nwindow.addEventListener(\"load\", () => setTimeout(() => fetch(\"/report\")")
+                .append(".then(r => r.text()).then(t => document.getElementById(\"report\").textContent = t), ")
+                .append(REPORT_DELAY_MILLIS).append("));\n</script>\n</body></html>\n");
+        return html.toString();
+    }
+
+    private String report() {
+        StringBuilder report = new StringBuilder();
+        int failed = 0;
+        for (Item item : ITEMS) {
+            boolean control = received.contains(PAGE_HOST + "/t/" + item.name);
+            boolean tracker = received.contains(TRACKER_HOST + "/t/" + item.name);
+            String verdict;
+            if (tracker) {
+                verdict = "NOT BLOCKED";
+                failed++;
+            } else if (control) {
+                verdict = "blocked";
+            } else {
+                verdict = "not exercised (control request never arrived)";
+            }
+            report.append(String.format("%-12s %-17s %s%n", item.name, item.resourceType, verdict));
+        }
+        report.append(failed == 0 ? "No tracker request got through\n" : failed + " tracker request types got through\n");
+        return report.toString();
+    }
+
+    private String base(String scheme, String host) {
+        return scheme + "://" + host + ":" + port;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body,
+            Map<String, String> headers) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        if (status == 204) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.krillbrowser.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import com.krillbrowser.RequestType;
+
+/**
+ * UrlCorpus - Page loads to replay through the navigation policy
+ *
+ * A corpus is a list of requests in page order: each top-level navigation
+ * (DOCUMENT) is followed by the subresources that page would load. The
+ * generator mixes four kinds of pages:
+ * - tracker-heavy: 20-60 subresources, ~40% of them to blocklisted hosts
+ * - clean: a handful of first-party scripts, styles and images
+ * - phishing lookalikes: brand typos and login/verify paths, no subresources
+ * - long query strings: dozens of parameters, some of them tracking ones
+ *
+ * On disk one request per line, tab separated:
+ * TYPE url [documentUrl]. Lines starting with '#' are ignored.
+ */
+final class UrlCorpus {
+
+    enum Kind {
+        TRACKER_HEAVY(40), CLEAN(35), PHISHING(10), LONG_QUERY(15);
+
+        final int percent;
+
+        Kind(int percent) {
+            this.percent = percent;
+        }
+    }
+
+    static final class Request {
+        final RequestType type;
+        final String url;
+        final String documentUrl; // null for a navigation
+
+        Request(RequestType type, String url, String documentUrl) {
+            this.type = type;
+            this.url = url;
+            this.documentUrl = documentUrl;
+        }
+
+        boolean isNavigation() {
+            return documentUrl == null;
+        }
+    }
+
+    private static final String[] BRANDS = { "paypal", "google", "apple", "amazon", "microsoft", "netflix", "chase" };
+    private static final String[] PHISHING_PATHS = {
+            "/login/verify", "/account/suspended", "/update/payment", "/secure/login", "/signin", "/"
+    };
+    private static final String[] TRACKING_PARAMS = {
+            "utm_source", "utm_medium", "utm_campaign", "utm_content", "fbclid", "gclid", "msclkid", "_ga"
+    };
+    private static final RequestType[] FIRST_PARTY_TYPES = {
+            RequestType.SCRIPT, RequestType.STYLESHEET, RequestType.IMAGE, RequestType.IMAGE,
+            RequestType.FONT, RequestType.XMLHTTPREQUEST
+    };
+    private static final RequestType[] TRACKER_TYPES = {
+            RequestType.SCRIPT, RequestType.IMAGE, RequestType.PING, RequestType.XMLHTTPREQUEST,
+            RequestType.SUBDOCUMENT
+    };
+
+    private UrlCorpus() {
+    }
+
+    /**
+     * Generate pages page loads; trackerDomains are the blocklisted hosts
+     */
+    static List<Request> generate(int pages, String[] trackerDomains, long seed) {
+        Random random = new Random(seed);
+        String[] sites = BenchmarkData.domains(5_000, seed + 1);
+        List<Request> requests = new ArrayList<>(pages * 20);
+
+        for (int page = 0; page < pages; page++) {
+            String site = "www." + sites[random.nextInt(sites.length)];
+            switch (pick(random)) {
+                case TRACKER_HEAVY: {
+                    String pageUrl = "https://" + site + "/article/" + random.nextInt(100_000);
+                    requests.add(new Request(RequestType.DOCUMENT, pageUrl, null));
+                    int subresources = 20 + random.nextInt(41);
+                    for (int i = 0; i < subresources; i++) {
+                        if (random.nextInt(100) < 40) {
+                            String tracker = trackerDomains[random.nextInt(trackerDomains.length)];
+                            requests.add(new Request(TRACKER_TYPES[random.nextInt(TRACKER_TYPES.length)],
+                                    "https://" + tracker + "/collect?v=1&tid=UA-" + random.nextInt(1_000_000)
+                                            + "&cid=" + Long.toHexString(random.nextLong()),
+                                    pageUrl));
+                        } else {
+                            requests.add(firstParty(random, site, pageUrl));
+                        }
+                    }
+                    break;
+                }
+                case CLEAN: {
+                    String pageUrl = "https://" + site + "/docs/" + random.nextInt(1_000) + "?page=" + random.nextInt(10);
+                    requests.add(new Request(RequestType.DOCUMENT, pageUrl, null));
+                    int subresources = 5 + random.nextInt(11);
+                    for (int i = 0; i < subresources; i++) {
+                        requests.add(firstParty(random, site, pageUrl));
+                    }
+                    break;
+                }
+                case PHISHING:
+                    requests.add(new Request(RequestType.DOCUMENT, "https://" + lookalike(random)
+                            + PHISHING_PATHS[random.nextInt(PHISHING_PATHS.length)], null));
+                    break;
+                default: {
+                    StringBuilder url = new StringBuilder("https://").append(site).append("/search?q=krill");
+                    int params = 20 + random.nextInt(41);
+                    for (int i = 0; i < params; i++) {
+                        String name = random.nextInt(5) == 0 ? TRACKING_PARAMS[random.nextInt(TRACKING_PARAMS.length)]
+                                : "p" + i;
+                        url.append('&').append(name).append('=').append(Long.toString(random.nextLong() >>> 1, 36));
+                    }
+                    String pageUrl = url.toString();
+                    requests.add(new Request(RequestType.DOCUMENT, pageUrl, null));
+                    for (int i = 0; i < 3; i++) {
+                        requests.add(firstParty(random, site, pageUrl));
+                    }
+                }
+            }
+        }
+        return requests;
+    }
+
+    private static Kind pick(Random random) {
+        int roll = random.nextInt(100);
+        for (Kind kind : Kind.values()) {
+            roll -= kind.percent;
+            if (roll < 0)
+                return kind;
+        }
+        return Kind.CLEAN;
+    }
+
+    private static Request firstParty(Random random, String site, String pageUrl) {
+        RequestType type = FIRST_PARTY_TYPES[random.nextInt(FIRST_PARTY_TYPES.length)];
+        String host = random.nextBoolean() ? site : "static." + site.substring(4);
+        return new Request(type, "https://" + host + "/assets/" + type.name().toLowerCase() + "/"
+                + random.nextInt(10_000) + "?v=" + random.nextInt(100), pageUrl);
+    }
+
+    /**
+     * A brand domain with a typo, digit swap or an extra word
+     */
+    private static String lookalike(Random random) {
+        String brand = BRANDS[random.nextInt(BRANDS.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                // First o/l/e/a swapped for the digit that looks like it
+                for (int i = 0; i < brand.length(); i++) {
+                    int swap = "olea".indexOf(brand.charAt(i));
+                    if (swap >= 0)
+                        return brand.substring(0, i) + "0134".charAt(swap) + brand.substring(i + 1) + ".com";
+                }
+                return brand + "1.com";
+            case 1:
+                return brand + "-secure-login.net";
+            case 2:
+                return "accounts-" + brand + ".com";
+            default:
+                int i = 1 + random.nextInt(brand.length() - 1);
+                return brand.substring(0, i) + brand.substring(i, i + 1) + brand.substring(i) + ".com";
+        }
+    }
+
+    static void write(Path file, List<Request> requests) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# type\turl\tdocumentUrl");
+            out.newLine();
+            for (Request request : requests) {
+                out.write(request.type.name());
+                out.write('\t');
+                out.write(request.url);
+                if (request.documentUrl != null) {
+                    out.write('\t');
+                    out.write(request.documentUrl);
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    static List<Request> read(Path file) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 2)
+                    throw new IOException("Malformed corpus line: " + line);
+                requests.add(new Request(RequestType.valueOf(fields[0]), fields[1],
+                        fields.length == 3 ? fields[2] : null));
+            }
+        }
+        return requests;
+    }
+}
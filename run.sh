@@ -8,6 +8,7 @@ cd "$(dirname "$0")"
 if [ ! -d "out" ] || [ "src/com/krillbrowser/KrillBrowser.java" -nt "out/com/krillbrowser/KrillBrowser.class" ]; then
     echo "🦐 Compiling Krill Browser..."
     javac --module-path javafx-sdk-21.0.5/lib --add-modules javafx.controls,javafx.web,javafx.media -d out src/module-info.java src/com/krillbrowser/*.java
+    cp src/main/resources/public_suffix_list.dat out/
 fi
 
 echo "🦐 Starting Krill Browser (Performance Mode)..."
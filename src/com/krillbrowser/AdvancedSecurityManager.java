@@ -1,10 +1,10 @@
 package com.krillbrowser;
 
 import java.io.*;
-import java.net.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AdvancedSecurityManager - Comprehensive security features for daily browser
@@ -24,24 +24,46 @@ public class AdvancedSecurityManager {
     private static AdvancedSecurityManager instance;
 
     // Security settings
-    private boolean blockTrackers = true;
-    private boolean blockAds = true;
-    private boolean sendDoNotTrack = true;
-    private boolean blockReferrer = true;
-    private boolean blockThirdPartyCookies = true;
-    private boolean clearOnExit = false;
-    private boolean javascriptEnabled = true;
-    private boolean httpsOnly = false; // Strict mode - block all HTTP
-
-    // Tracker/Ad blocklist (commonly blocked domains)
-    private Set<String> blockedDomains;
+    private volatile boolean blockTrackers = true;
+    private volatile boolean blockAds = true;
+    private volatile boolean sendDoNotTrack = true;
+    private volatile boolean blockReferrer = true;
+    private volatile boolean blockThirdPartyCookies = true;
+    private volatile boolean clearOnExit = false;
+    private volatile boolean javascriptEnabled = true;
+    private volatile boolean httpsOnly = false; // Strict mode - block all HTTP
+
+    // Every blocklist index, published as one immutable RuleSet: checks read
+    // it once without locking, changes build a new one and swap it in
+    private volatile RuleSet rules;
+
+    // Blocklist edits since blocklist.txt was last written, compacted into it
+    // in the background once the journal passes COMPACT_JOURNAL_BYTES
+    private static final long COMPACT_JOURNAL_BYTES = 64 * 1024;
+    private final BlocklistJournal journal;
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private final LatencyHistogram compactionLatency = new LatencyHistogram();
+
+    // Host -> matched host rule ("" when none), invalidated by rule changes
+    private final VerdictCache<String> hostVerdicts =
+            new VerdictCache<>("advanced-security", VerdictCache.DEFAULT_CAPACITY);
+    // Host -> element-hiding sheet; most share the generic sheet or add a
+    // small one to it. Sheets of sites exempt from generic rules are full
+    // copies, so only a few of those are kept.
+    private final VerdictCache<CosmeticFilterEngine.Style> cosmeticStyles =
+            new VerdictCache<>("cosmetic", VerdictCache.DEFAULT_CAPACITY);
+    private final VerdictCache<CosmeticFilterEngine.Style> exemptCosmeticStyles =
+            new VerdictCache<>("cosmetic-exempt", 16);
+    private static final String NO_MATCH = "";
 
     // Tracking keywords in URLs
+    // Exact parameter names, or prefixes ending in '*'
     private static final String[] TRACKING_PARAMS = {
-            "utm_source", "utm_medium", "utm_campaign", "utm_term", "utm_content",
+            "utm_*",
             "fbclid", "gclid", "msclkid", "twclid", "igshid",
             "mc_eid", "mc_cid", "_ga", "_gl", "ref", "source"
     };
+    private static final QueryParamStripper TRACKING_PARAM_STRIPPER = new QueryParamStripper(TRACKING_PARAMS);
 
     // Common tracker/ad domains
     private static final String[] BLOCKED_TRACKER_DOMAINS = {
@@ -65,10 +87,25 @@ public class AdvancedSecurityManager {
             "virus-download.net", "steal-passwords.com", "crypto-scam.com"
     };
 
+    // blocklist.txt line prefix marking a built-in tracker the user removed
+    static final String REMOVED_PREFIX = "-";
+
+    // Never blocked: YouTube and its video CDN break without these
+    private static final String[] BUILTIN_EXCEPTIONS = {
+            "@@||googlevideo.com^", "@@||youtube.com^"
+    };
+
+    // Element hiding for ads that are served from first-party hosts
+    private static final String[] BUILTIN_COSMETIC_FILTERS = {
+            "youtube.com##.ytd-ad-slot-renderer",
+            "youtube.com##ytd-promoted-sparkles-web-renderer",
+            "youtube.com##.ytd-in-feed-ad-layout-renderer"
+    };
+
     private AdvancedSecurityManager() {
-        blockedDomains = new HashSet<>();
-        Collections.addAll(blockedDomains, BLOCKED_TRACKER_DOMAINS);
-        loadCustomBlocklist();
+        journal = new BlocklistJournal(getDataDirectory().resolve("blocklist.journal"));
+        rules = loadRules();
+        compactIfNeeded();
     }
 
     public static synchronized AdvancedSecurityManager getInstance() {
@@ -78,28 +115,115 @@ public class AdvancedSecurityManager {
         return instance;
     }
 
+    /**
+     * Build a rule set from everything on disk plus the built-in rules
+     */
+    private RuleSet loadRules() {
+        RuleSet initial = new RuleSet();
+        List<String> removedBuiltins = new ArrayList<>();
+        loadCustomBlocklist(initial, removedBuiltins);
+        loadHostsFiles(initial);
+        for (String domain : BLOCKED_TRACKER_DOMAINS) {
+            initial.addRule(domain);
+        }
+        for (String domain : removedBuiltins) {
+            initial.removeRule(domain);
+        }
+        for (String exception : BUILTIN_EXCEPTIONS) {
+            initial.filterEngine.addFilter(exception);
+        }
+        for (String filter : BUILTIN_COSMETIC_FILTERS) {
+            initial.cosmeticFilters.addFilter(filter);
+        }
+        loadFilterLists(initial);
+        replayJournal(initial);
+        initial.rebuildPathMatcher();
+        initial.rebuildHostBloom();
+        return initial;
+    }
+
+    /**
+     * Re-read blocklist.txt, hosts files and filter lists, e.g. after they
+     * were edited outside the browser
+     */
+    public synchronized void reloadBlocklists() {
+        publish(loadRules());
+    }
+
     /**
      * Check if a URL should be blocked (trackers, ads, malware)
      */
     public boolean shouldBlockUrl(String url) {
+        return shouldBlockRequest(url, null, RequestType.DOCUMENT);
+    }
+
+    /**
+     * Check a request against every rule set, honouring "@@" exceptions
+     *
+     * @param documentUrl URL of the page making the request, or null for a
+     *                    top-level navigation
+     */
+    public boolean shouldBlockRequest(String url, String documentUrl, RequestType type) {
         if (url == null)
             return false;
+        return shouldBlockRequest(ParsedUrl.parse(url),
+                documentUrl != null ? ParsedUrl.parse(documentUrl) : null, type);
+    }
 
-        String lowerUrl = url.toLowerCase();
-
+    /**
+     * Same as shouldBlockRequest(String, String, RequestType) for URLs that
+     * were already parsed by the navigation pipeline
+     */
+    boolean shouldBlockRequest(ParsedUrl url, ParsedUrl document, RequestType type) {
         // Check blocked domains
         if (blockTrackers || blockAds) {
-            // WHITELIST: Allow Google Video (YouTube CDN)
-            if (lowerUrl.contains("googlevideo.com") || lowerUrl.contains("youtube.com")) {
-                return false;
+            // Generation before rules: a verdict from these rules must never
+            // be cached under the generation of a newer rule set
+            long generation = VerdictCache.currentGeneration();
+            RuleSet current = rules;
+            String text = url.url();
+            int hostStart = url.hostStart();
+            int hostEnd = url.hostEnd();
+
+            String docHost = null;
+            boolean thirdParty = false;
+            if (document != null) {
+                docHost = document.host();
+                thirdParty = !url.sameSite(document);
             }
 
-            for (String domain : blockedDomains) {
-                if (lowerUrl.contains(domain)) {
-                    System.out.println("🛡️ Blocked: " + domain);
-                    return true;
+            String rule = null;
+
+            // Host rules: cached per host, otherwise one trie step per label
+            String host = url.host();
+            String hostRule = hostVerdicts.get(host);
+            if (hostRule == null) {
+                hostRule = current.matchHostRule(host);
+                hostVerdicts.put(host, hostRule, generation);
+            }
+
+            if (hostRule != NO_MATCH) {
+                rule = hostRule;
+            } else {
+                // Path rules: every pattern in one pass over the URL
+                int pathMatch = current.pathMatcher.find(text);
+                if (pathMatch >= 0) {
+                    rule = current.pathMatcher.pattern(pathMatch);
                 }
             }
+
+            if (rule != null) {
+                if (current.filterEngine.isExcepted(text, hostStart, hostEnd, docHost, thirdParty, type))
+                    return false;
+            } else {
+                // Filter rules: only those sharing a token with the URL are tested
+                rule = current.filterEngine.match(text, hostStart, hostEnd, docHost, thirdParty, type);
+            }
+
+            if (rule != null) {
+                EventLog.log(EventLog.Event.REQUEST_BLOCKED, rule, text);
+                return true;
+            }
         }
 
         return false;
@@ -109,7 +233,7 @@ public class AdvancedSecurityManager {
      * Clean tracking parameters from URL
      */
     public String cleanUrl(String url) {
-        if (url == null || !url.contains("?"))
+        if (url == null)
             return url;
 
         // CRITICAL FOR YOUTUBE: Do not strip parameters from video chunks
@@ -117,46 +241,11 @@ public class AdvancedSecurityManager {
             return url;
         }
 
-        try {
-            URI uri = new URI(url);
-            String query = uri.getQuery();
-
-            if (query == null)
-                return url;
-
-            // Parse and filter query parameters
-            StringBuilder cleanQuery = new StringBuilder();
-            String[] params = query.split("&");
-
-            for (String param : params) {
-                String paramName = param.split("=")[0].toLowerCase();
-                boolean isTracker = false;
-
-                for (String trackParam : TRACKING_PARAMS) {
-                    if (paramName.equals(trackParam) || paramName.startsWith(trackParam)) {
-                        isTracker = true;
-                        System.out.println("🧹 Removed tracking param: " + paramName);
-                        break;
-                    }
-                }
-
-                if (!isTracker) {
-                    if (cleanQuery.length() > 0)
-                        cleanQuery.append("&");
-                    cleanQuery.append(param);
-                }
-            }
-
-            // Rebuild URL
-            String baseUrl = url.split("\\?")[0];
-            if (cleanQuery.length() > 0) {
-                return baseUrl + "?" + cleanQuery.toString();
-            }
-            return baseUrl;
-
-        } catch (Exception e) {
-            return url;
+        String cleaned = TRACKING_PARAM_STRIPPER.strip(url);
+        if (cleaned != url) {
+            EventLog.log(EventLog.Event.TRACKING_PARAMS_STRIPPED, url, cleaned);
         }
+        return cleaned;
     }
 
     /**
@@ -202,37 +291,424 @@ public class AdvancedSecurityManager {
 
     /**
      * Load custom blocklist from file
+     *
+     * Hosts are served from the memory-mapped blocklist.bin; the text list is
+     * only parsed when the snapshot is missing or older than the text.
+     * "-entry" lines name built-in rules the user removed; they are collected
+     * into removedBuiltins for the caller to apply after the built-ins.
      */
-    private void loadCustomBlocklist() {
+    private void loadCustomBlocklist(RuleSet target, List<String> removedBuiltins) {
         try {
             Path blocklistPath = getDataDirectory().resolve("blocklist.txt");
-            if (Files.exists(blocklistPath)) {
-                List<String> customDomains = Files.readAllLines(blocklistPath);
-                blockedDomains.addAll(customDomains);
+            Path snapshotBase = getDataDirectory().resolve("blocklist.bin");
+            if (!Files.exists(blocklistPath))
+                return;
+
+            BlocklistSnapshot compiled = null;
+            Path snapshotPath = BlocklistSnapshot.latestVersion(snapshotBase);
+            if (snapshotPath != null) {
+                try {
+                    compiled = BlocklistSnapshot.open(snapshotPath);
+                } catch (IOException e) {
+                    System.err.println("Ignoring unreadable blocklist snapshot: " + e.getMessage());
+                }
+            }
+            if (compiled == null || !compiled.isFreshFor(blocklistPath)) {
+                snapshotPath = BlocklistSnapshot.nextVersion(snapshotBase);
+                writeSnapshot(Files.readAllLines(blocklistPath), blocklistPath, snapshotPath);
+                compiled = BlocklistSnapshot.open(snapshotPath);
+            }
+            BlocklistSnapshot.deleteOtherVersions(snapshotBase, snapshotPath);
+
+            target.snapshot = compiled;
+            for (String rule : compiled.getExtraRules()) {
+                if (rule.startsWith(REMOVED_PREFIX)) {
+                    removedBuiltins.add(rule.substring(REMOVED_PREFIX.length()));
+                } else {
+                    target.addRule(rule);
+                }
             }
         } catch (IOException e) {
             System.err.println("Could not load custom blocklist: " + e.getMessage());
         }
     }
 
+    /**
+     * Compile blocklist entries into a snapshot stamped with the text file's version
+     */
+    private static void writeSnapshot(Collection<String> entries, Path blocklistPath, Path snapshotPath)
+            throws IOException {
+        BlocklistSnapshot.write(snapshotPath, entries, Files.size(blocklistPath),
+                Files.getLastModifiedTime(blocklistPath).toMillis());
+    }
+
+    /**
+     * Load hosts files and domain lists dropped into ~/.krillbrowser/hosts
+     */
+    private void loadHostsFiles(RuleSet target) {
+        Path hostsDir = getDataDirectory().resolve("hosts");
+        if (!Files.isDirectory(hostsDir))
+            return;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(hostsDir,
+                entry -> Files.isRegularFile(entry) && !entry.toString().endsWith(".bin")
+                        && !entry.toString().endsWith(".tmp"))) {
+            for (Path file : files) {
+                loadHostsFile(target, file);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not load hosts files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copy a hosts file ("0.0.0.0 domain" lines) or plain domain list into
+     * ~/.krillbrowser/hosts and start blocking its hosts.
+     * Returns the number of distinct hosts it contains.
+     */
+    public int importHostsFile(Path file) {
+        try {
+            Path hostsDir = getDataDirectory().resolve("hosts");
+            Files.createDirectories(hostsDir);
+            Path target = hostsDir.resolve(file.getFileName());
+            if (!Files.exists(target) || !Files.isSameFile(file, target)) {
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            synchronized (this) {
+                RuleSet next = rules.copy();
+                int count = loadHostsFile(next, target);
+                next.rebuildHostBloom();
+                publish(next);
+                return count;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not import hosts file " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Map a hosts file's snapshot, compiling it first when missing or stale
+     */
+    private int loadHostsFile(RuleSet target, Path file) throws IOException {
+        Path snapshotBase = file.resolveSibling(file.getFileName() + ".bin");
+        Path snapshotPath = BlocklistSnapshot.latestVersion(snapshotBase);
+        BlocklistSnapshot compiled = null;
+        if (snapshotPath != null) {
+            try {
+                compiled = BlocklistSnapshot.open(snapshotPath);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable hosts snapshot: " + e.getMessage());
+            }
+        }
+        if (compiled == null || !compiled.isFreshFor(file)) {
+            snapshotPath = BlocklistSnapshot.nextVersion(snapshotBase);
+            HostsFileImporter.Result result = HostsFileImporter.compile(file, snapshotPath,
+                    Files.size(file), Files.getLastModifiedTime(file).toMillis());
+            compiled = BlocklistSnapshot.open(snapshotPath);
+            EventLog.log(EventLog.Event.HOSTS_FILE_IMPORTED, String.format("%s (%.1f MB at %.1f MB/s)",
+                    file.getFileName(), result.bytes / 1048576.0, result.megabytesPerSecond()), result.hosts);
+        }
+        BlocklistSnapshot.deleteOtherVersions(snapshotBase, snapshotPath);
+
+        // Re-importing a file replaces its previous snapshot
+        target.hostsFiles.put(file, compiled);
+        return compiled.size();
+    }
+
+    /**
+     * Load Adblock Plus / EasyList subscriptions from ~/.krillbrowser/filters
+     */
+    private void loadFilterLists(RuleSet target) {
+        Path filtersDir = getDataDirectory().resolve("filters");
+        if (!Files.isDirectory(filtersDir))
+            return;
+
+        try (DirectoryStream<Path> lists = Files.newDirectoryStream(filtersDir, "*.txt")) {
+            for (Path list : lists) {
+                loadFilterList(target, list);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not load filter lists: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load one filter list file, returning the number of filters compiled
+     */
+    public synchronized int loadFilterList(Path file) {
+        RuleSet next = rules.copy();
+        int loaded = loadFilterList(next, file);
+        publish(next);
+        return loaded;
+    }
+
+    private int loadFilterList(RuleSet target, Path file) {
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (target.filterEngine.addFilter(line) || target.cosmeticFilters.addFilter(line)) {
+                    loaded++;
+                }
+            }
+            EventLog.log(EventLog.Event.FILTER_LIST_LOADED, file.getFileName().toString(), loaded);
+        } catch (IOException e) {
+            System.err.println("Could not load filter list " + file + ": " + e.getMessage());
+        }
+        return loaded;
+    }
+
     /**
      * Add domain to blocklist
      */
     public void addToBlocklist(String domain) {
-        blockedDomains.add(domain.toLowerCase());
-        saveCustomBlocklist();
+        addToBlocklist(Collections.singletonList(domain));
     }
 
     /**
-     * Save custom blocklist
+     * Add several blocklist entries as one change: checks switch from the old
+     * rules to the new ones in a single step
      */
-    private void saveCustomBlocklist() {
+    public synchronized void addToBlocklist(Collection<String> entries) {
+        RuleSet next = rules.copy();
+        for (String entry : entries) {
+            next.addRule(entry);
+        }
+        if (next.pathRules.size() != rules.pathRules.size()) {
+            next.rebuildPathMatcher();
+        }
+        publish(next);
+        saveBlocklistEdit(true, entries);
+    }
+
+    /**
+     * Remove entries from the blocklist (built-in trackers included)
+     */
+    public synchronized void removeFromBlocklist(Collection<String> entries) {
+        RuleSet next = rules.copy();
+        boolean filtersRemoved = false;
+        for (String entry : entries) {
+            if (next.removeRule(entry) && isFilterSyntax(entry.trim())) {
+                filtersRemoved = true;
+            }
+        }
+        if (filtersRemoved) {
+            rebuildFilterEngine(next);
+        }
+        next.rebuildPathMatcher();
+        publish(next);
+        saveBlocklistEdit(false, entries);
+    }
+
+    public void removeFromBlocklist(String domain) {
+        removeFromBlocklist(Collections.singletonList(domain));
+    }
+
+    /**
+     * Filter engines cannot forget filters, so recompile every remaining one
+     */
+    private void rebuildFilterEngine(RuleSet target) {
+        target.filterEngine = new AdblockFilterEngine();
+        target.cosmeticFilters = new CosmeticFilterEngine();
+        for (String exception : BUILTIN_EXCEPTIONS) {
+            target.filterEngine.addFilter(exception);
+        }
+        for (String filter : BUILTIN_COSMETIC_FILTERS) {
+            target.cosmeticFilters.addFilter(filter);
+        }
+        for (String rule : target.blockedDomains) {
+            if (isFilterSyntax(rule) && !target.filterEngine.addFilter(rule)) {
+                target.cosmeticFilters.addFilter(rule);
+            }
+        }
+        loadFilterLists(target);
+    }
+
+    /**
+     * Element-hiding stylesheet for a page, precompiled and cached per host.
+     * Returns null when ad blocking is off or nothing applies.
+     */
+    CosmeticFilterEngine.Style getCosmeticStyle(String url) {
+        if (!blockAds || url == null || !(url.startsWith("http://") || url.startsWith("https://")))
+            return null;
+
+        String host = ParsedUrl.parse(url).host();
+        CosmeticFilterEngine.Style style = cosmeticStyles.get(host);
+        if (style == null)
+            style = exemptCosmeticStyles.get(host);
+        if (style == null) {
+            long generation = VerdictCache.currentGeneration();
+            style = rules.cosmeticFilters.styleFor(host);
+            (style.copiesGenericRules() ? exemptCosmeticStyles : cosmeticStyles).put(host, style, generation);
+        }
+        return style.isEmpty() ? null : style;
+    }
+
+    /**
+     * Make a new rule set visible to checks and drop verdicts made under the old one
+     */
+    private void publish(RuleSet next) {
+        rules = next;
+        VerdictCache.bumpGeneration();
+    }
+
+    /**
+     * Tune the host Bloom filters: target false-positive rate and memory cap.
+     * This manager's filter is rebuilt now; the others on their next change.
+     */
+    public synchronized void setBloomFilterTuning(double falsePositiveRate, int maxBytes) {
+        HostBloomFilter.configure(falsePositiveRate, maxBytes);
+        RuleSet next = rules.copy();
+        next.rebuildHostBloom();
+        publish(next);
+    }
+
+    public double getBloomFilterFalsePositiveRate() {
+        return rules.hostBloom.expectedFalsePositiveRate();
+    }
+
+    public int getBloomFilterBytes() {
+        return rules.hostBloom.sizeInBytes();
+    }
+
+    /**
+     * Entries written in Adblock Plus syntax rather than as a bare domain/path
+     */
+    private static boolean isFilterSyntax(String rule) {
+        return rule.startsWith("|") || rule.startsWith("@@") || rule.startsWith("/")
+                || rule.indexOf('^') >= 0 || rule.indexOf('*') >= 0 || rule.indexOf('$') >= 0
+                || isElementHiding(rule);
+    }
+
+    /**
+     * Cosmetic "##" / "#@#" rules, which a leading '#' must not turn into comments
+     */
+    static boolean isElementHiding(String rule) {
+        return rule.contains("##") || rule.contains("#@#");
+    }
+
+    /**
+     * Apply the edits recorded since blocklist.txt was last written
+     */
+    private void replayJournal(RuleSet target) {
+        boolean[] filtersRemoved = new boolean[1];
         try {
-            Path blocklistPath = getDataDirectory().resolve("blocklist.txt");
-            Files.write(blocklistPath, blockedDomains);
+            journal.replay((add, entry) -> {
+                if (add) {
+                    target.addRule(entry);
+                } else if (target.removeRule(entry) && isFilterSyntax(entry.trim())) {
+                    filtersRemoved[0] = true;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not replay blocklist journal: " + e.getMessage());
+        }
+        if (filtersRemoved[0]) {
+            rebuildFilterEngine(target);
+        }
+    }
+
+    /**
+     * Record a blocklist edit: one small append, whatever the list size
+     */
+    private void saveBlocklistEdit(boolean add, Collection<String> entries) {
+        try {
+            journal.append(add, entries);
         } catch (IOException e) {
             System.err.println("Could not save blocklist: " + e.getMessage());
         }
+        compactIfNeeded();
+    }
+
+    /**
+     * Start a background compaction once the journal is large enough
+     */
+    private void compactIfNeeded() {
+        try {
+            if (journal.size() < COMPACT_JOURNAL_BYTES || !compactionPending.compareAndSet(false, true))
+                return;
+        } catch (IOException e) {
+            return;
+        }
+        Thread compactor = new Thread(this::compactBlocklist, "blocklist-compaction");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    /**
+     * Compact the journal into blocklist.txt now, on the calling thread.
+     * Returns false if a background compaction is already running.
+     */
+    public boolean flushBlocklist() {
+        if (!compactionPending.compareAndSet(false, true))
+            return false;
+        compactBlocklist();
+        return true;
+    }
+
+    /**
+     * Bytes of blocklist edits waiting to be compacted into blocklist.txt
+     */
+    public long getJournalBytes() {
+        try {
+            return journal.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public LatencyHistogram.Snapshot getCompactionLatency() {
+        return compactionLatency.snapshot();
+    }
+
+    /**
+     * Write the current rules back to blocklist.txt (and its snapshot), then
+     * drop the journal records they now contain
+     */
+    private void compactBlocklist() {
+        long started = System.nanoTime();
+        try {
+            RuleSet current;
+            long covered;
+            synchronized (this) {
+                current = rules;
+                covered = journal.size();
+            }
+
+            Path blocklistPath = getDataDirectory().resolve("blocklist.txt");
+            Path temp = blocklistPath.resolveSibling("blocklist.txt.tmp");
+            Set<String> entries = current.allBlockedDomains();
+            // Built-ins are re-added at every startup, so their removals have
+            // to outlive the journal records that carried them
+            List<String> lines = new ArrayList<>(entries);
+            for (String domain : BLOCKED_TRACKER_DOMAINS) {
+                if (!entries.contains(domain)) {
+                    lines.add(REMOVED_PREFIX + domain);
+                }
+            }
+            Files.write(temp, lines);
+            Files.move(temp, blocklistPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.discardBefore(covered);
+
+            // Recompile so the next startup maps the list instead of parsing
+            // it. The running rules keep their mapping of the old version, so
+            // the new one gets its own file; a failure here only means the
+            // next startup compiles it instead.
+            Path snapshotBase = blocklistPath.resolveSibling("blocklist.bin");
+            Path snapshotPath = BlocklistSnapshot.nextVersion(snapshotBase);
+            try {
+                writeSnapshot(lines, blocklistPath, snapshotPath);
+                BlocklistSnapshot.deleteOtherVersions(snapshotBase, snapshotPath);
+            } catch (IOException e) {
+                System.err.println("Could not compile blocklist snapshot: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not compact blocklist: " + e.getMessage());
+        } finally {
+            compactionLatency.record(System.nanoTime() - started);
+            compactionPending.set(false);
+        }
     }
 
     private Path getDataDirectory() {
@@ -249,12 +725,14 @@ public class AdvancedSecurityManager {
     /**
      * Get security statistics
      */
-    public Map<String, Integer> getSecurityStats() {
-        // In a real implementation, these would be tracked during browsing
-        Map<String, Integer> stats = new HashMap<>();
-        stats.put("trackersBlocked", 0);
-        stats.put("adsBlocked", 0);
-        stats.put("httpsUpgrades", 0);
+    public Map<String, Long> getSecurityStats() {
+        SecurityStats.Snapshot snapshot = SecurityStats.global().snapshot();
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("trackersBlocked", snapshot.getTrackersBlocked());
+        stats.put("adsBlocked", snapshot.getAdsBlocked());
+        stats.put("httpsUpgrades", snapshot.getHttpsUpgrades());
+        stats.put("phishingHits", snapshot.getPhishingHits());
+        stats.put("bytesAvoided", snapshot.getBytesAvoided());
         return stats;
     }
 
@@ -262,11 +740,35 @@ public class AdvancedSecurityManager {
      * Get all blocked domains
      */
     public Set<String> getBlockedDomains() {
-        return new HashSet<>(blockedDomains);
+        return rules.allBlockedDomains();
     }
 
     public int getBlockedDomainsCount() {
-        return blockedDomains.size();
+        RuleSet current = rules;
+        return current.blockedDomains.size() - current.removedHosts.size()
+                + (current.snapshot != null ? current.snapshot.size() : 0);
+    }
+
+    /**
+     * Hosts blocked by imported hosts files (not part of getBlockedDomains)
+     */
+    public int getHostsFileHostCount() {
+        int count = 0;
+        for (BlocklistSnapshot hostsFile : rules.hostsFiles.values()) {
+            count += hostsFile.size();
+        }
+        return count;
+    }
+
+    /**
+     * Adblock-syntax network filters and element-hiding rules in use
+     */
+    public int getNetworkFilterCount() {
+        return rules.filterEngine.size();
+    }
+
+    public int getCosmeticFilterCount() {
+        return rules.cosmeticFilters.size();
     }
 
     // Getters and setters
@@ -310,6 +812,18 @@ public class AdvancedSecurityManager {
         this.blockThirdPartyCookies = block;
     }
 
+    /**
+     * Whether a request may send or store cookies. With third-party cookies
+     * blocked only requests to the page's own site (registrable domain, so
+     * static.bbc.co.uk on www.bbc.co.uk but not evil.github.io on
+     * me.github.io) may.
+     */
+    public boolean allowsCookies(String url, String documentUrl) {
+        if (!blockThirdPartyCookies || url == null || documentUrl == null)
+            return true;
+        return ParsedUrl.parse(url).sameSite(ParsedUrl.parse(documentUrl));
+    }
+
     public boolean isClearOnExit() {
         return clearOnExit;
     }
@@ -333,4 +847,193 @@ public class AdvancedSecurityManager {
     public void setHttpsOnly(boolean httpsOnly) {
         this.httpsOnly = httpsOnly;
     }
+
+    /**
+     * One version of every blocklist index. A published RuleSet is never
+     * modified again: writers change a copy() and publish that instead.
+     */
+    private static final class RuleSet {
+        // Tracker/Ad blocklist (commonly blocked domains)
+        Set<String> blockedDomains;
+
+        // Lookup indexes over blockedDomains: bare hosts go into the trie,
+        // entries with a path ("facebook.com/tr") into one compiled automaton
+        DomainTrie hostRules;
+        List<String> pathRules;
+        AhoCorasickMatcher pathMatcher = AhoCorasickMatcher.empty();
+
+        // Adblock Plus / EasyList filters (blocklist entries in filter syntax and
+        // subscriptions dropped into ~/.krillbrowser/filters)
+        AdblockFilterEngine filterEngine;
+
+        // Element-hiding ("##") rules from the same sources
+        CosmeticFilterEngine cosmeticFilters;
+
+        // blocklist.txt hosts, precompiled into blocklist.bin and memory-mapped
+        BlocklistSnapshot snapshot;
+
+        // snapshot hosts removed since blocklist.bin was compiled
+        Set<String> removedHosts;
+
+        // Community hosts files from ~/.krillbrowser/hosts, each compiled into
+        // its own memory-mapped snapshot next to the source file
+        Map<Path, BlocklistSnapshot> hostsFiles;
+
+        // Bloom filter over every blocked host (trie + snapshots): most hosts
+        // are rejected here without touching the exact indexes
+        HostBloomFilter hostBloom;
+
+        RuleSet() {
+            blockedDomains = new HashSet<>();
+            hostRules = new DomainTrie();
+            pathRules = new ArrayList<>();
+            filterEngine = new AdblockFilterEngine();
+            cosmeticFilters = new CosmeticFilterEngine();
+            removedHosts = new HashSet<>();
+            hostsFiles = new LinkedHashMap<>();
+        }
+
+        /**
+         * Private working copy; the memory-mapped snapshots and the compiled
+         * path automaton are immutable and shared
+         */
+        RuleSet copy() {
+            RuleSet copy = new RuleSet();
+            copy.blockedDomains = new HashSet<>(blockedDomains);
+            copy.hostRules = hostRules.copy();
+            copy.pathRules = new ArrayList<>(pathRules);
+            copy.pathMatcher = pathMatcher;
+            copy.filterEngine = filterEngine.copy();
+            copy.cosmeticFilters = cosmeticFilters.copy();
+            copy.snapshot = snapshot;
+            copy.removedHosts = new HashSet<>(removedHosts);
+            copy.hostsFiles = new LinkedHashMap<>(hostsFiles);
+            copy.hostBloom = hostBloom.copy();
+            return copy;
+        }
+
+        /**
+         * Blocked host rule covering host (itself or a parent domain), or NO_MATCH
+         */
+        String matchHostRule(String host) {
+            int length = host.length();
+            if (!hostBloom.mightContainSuffixOf(host, 0, length))
+                return NO_MATCH;
+
+            int match = hostRules.matchSuffix(host, 0, length);
+            if (match < 0 && snapshot != null) {
+                match = snapshot.matchSuffix(host, 0, length);
+                if (match >= 0 && !removedHosts.isEmpty() && removedHosts.contains(host.substring(match))) {
+                    match = -1;
+                }
+            }
+            if (match < 0) {
+                for (BlocklistSnapshot hostsFile : hostsFiles.values()) {
+                    match = hostsFile.matchSuffix(host, 0, length);
+                    if (match >= 0)
+                        break;
+                }
+            }
+            return match >= 0 ? host.substring(match) : NO_MATCH;
+        }
+
+        /**
+         * Index a blocklist entry as a host rule or a path rule
+         */
+        void addRule(String entry) {
+            String rule = entry.trim();
+            if (rule.isEmpty() || (rule.startsWith("#") && !isElementHiding(rule)) || rule.startsWith("!"))
+                return;
+
+            if (isFilterSyntax(rule)) {
+                if (!blockedDomains.contains(rule)
+                        && (filterEngine.addFilter(rule) || cosmeticFilters.addFilter(rule))) {
+                    blockedDomains.add(rule);
+                }
+                return;
+            }
+
+            rule = rule.toLowerCase();
+            if (snapshot != null && snapshot.contains(rule)) {
+                removedHosts.remove(rule);
+                return;
+            }
+            if (!blockedDomains.add(rule))
+                return;
+
+            if (rule.indexOf('/') >= 0) {
+                pathRules.add(rule);
+            } else {
+                hostRules.add(rule);
+                if (hostBloom != null) {
+                    hostBloom.add(DomainTrie.normalize(rule));
+                    if (hostBloom.isOverCapacity())
+                        rebuildHostBloom();
+                }
+            }
+        }
+
+        /**
+         * Remove a blocklist entry, returning whether it was present. Callers
+         * recompile the path matcher (and the filter engine for filter syntax).
+         */
+        boolean removeRule(String entry) {
+            String rule = entry.trim();
+            if (isFilterSyntax(rule))
+                return blockedDomains.remove(rule);
+
+            rule = rule.toLowerCase();
+            if (blockedDomains.remove(rule)) {
+                if (rule.indexOf('/') >= 0) {
+                    pathRules.remove(rule);
+                } else {
+                    hostRules.remove(rule);
+                }
+                return true;
+            }
+            return snapshot != null && snapshot.contains(rule) && removedHosts.add(rule);
+        }
+
+        /**
+         * Recompile the path-rule automaton after the rule set changed
+         */
+        void rebuildPathMatcher() {
+            pathMatcher = AhoCorasickMatcher.compile(pathRules);
+        }
+
+        /**
+         * Size a new Bloom filter for the current host rules and fill it
+         */
+        void rebuildHostBloom() {
+            int snapshotHosts = snapshot != null ? snapshot.size() : 0;
+            for (BlocklistSnapshot hostsFile : hostsFiles.values()) {
+                snapshotHosts += hostsFile.size();
+            }
+            HostBloomFilter bloom = new HostBloomFilter((long) (blockedDomains.size() + snapshotHosts) * 2);
+            for (String rule : blockedDomains) {
+                if (!isFilterSyntax(rule) && rule.indexOf('/') < 0) {
+                    bloom.add(DomainTrie.normalize(rule));
+                }
+            }
+            if (snapshot != null) {
+                snapshot.forEachKey(bloom::addReversed);
+            }
+            for (BlocklistSnapshot hostsFile : hostsFiles.values()) {
+                hostsFile.forEachKey(bloom::addReversed);
+            }
+            hostBloom = bloom;
+        }
+
+        /**
+         * Heap entries plus blocklist.txt hosts (imported hosts files excluded)
+         */
+        Set<String> allBlockedDomains() {
+            Set<String> domains = new HashSet<>(blockedDomains);
+            if (snapshot != null) {
+                snapshot.forEachHost(domains::add);
+            }
+            domains.removeAll(removedHosts);
+            return domains;
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package com.krillbrowser;
+
+import java.util.*;
+
+/**
+ * AhoCorasickMatcher - Compiled multi-pattern substring matcher
+ *
+ * All patterns are folded into one automaton, so a URL is checked against
+ * every rule in a single left-to-right pass, whatever the rule count.
+ * The automaton is immutable: compile a new one when the rule set changes.
+ *
+ * Matching is ASCII case-insensitive; patterns are stored lowercased.
+ */
+final class AhoCorasickMatcher {
+
+    private static final AhoCorasickMatcher EMPTY = compile(Collections.emptyList());
+
+    private final String[] patterns;
+
+    // Root transitions for ASCII, the hottest state by far
+    private final int[] rootNext;
+
+    // Goto edges in compressed rows: state s owns edges [edgeStart[s], edgeStart[s + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+
+    private final int[] fail;
+    // Pattern reported at each state (its own or one inherited via fail links), or -1
+    private final int[] output;
+
+    private AhoCorasickMatcher(String[] patterns, int[] rootNext, int[] edgeStart, char[] edgeChars,
+            int[] edgeTargets, int[] fail, int[] output) {
+        this.patterns = patterns;
+        this.rootNext = rootNext;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.output = output;
+    }
+
+    static AhoCorasickMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build the automaton for a set of patterns (blank entries are ignored)
+     */
+    static AhoCorasickMatcher compile(Collection<String> source) {
+        List<String> patternList = new ArrayList<>();
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(-1);
+
+        for (String raw : source) {
+            if (raw == null)
+                continue;
+            String pattern = raw.toLowerCase();
+            if (pattern.isEmpty())
+                continue;
+
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) < 0) {
+                terminal.set(state, patternList.size());
+                patternList.add(pattern);
+            }
+        }
+
+        int states = trie.size();
+        int[] edgeStart = new int[states + 1];
+        int edges = 0;
+        for (int s = 0; s < states; s++) {
+            edgeStart[s] = edges;
+            edges += trie.get(s).size();
+        }
+        edgeStart[states] = edges;
+
+        char[] edgeChars = new char[edges];
+        int[] edgeTargets = new int[edges];
+        for (int s = 0; s < states; s++) {
+            int e = edgeStart[s];
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+
+        int[] rootNext = new int[128];
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            if (edgeChars[e] < 128) {
+                rootNext[edgeChars[e]] = edgeTargets[e];
+            }
+        }
+
+        // Breadth-first pass for failure links and inherited outputs
+        int[] fail = new int[states];
+        int[] output = new int[states];
+        for (int s = 0; s < states; s++) {
+            output[s] = terminal.get(s);
+        }
+
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            fail[edgeTargets[e]] = 0;
+            queue[tail++] = edgeTargets[e];
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+                char c = edgeChars[e];
+                int target = edgeTargets[e];
+
+                int f = fail[s];
+                int next;
+                while ((next = step(edgeStart, edgeChars, edgeTargets, f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[target] = next < 0 || next == target ? 0 : next;
+                if (output[target] < 0) {
+                    output[target] = output[fail[target]];
+                }
+                queue[tail++] = target;
+            }
+        }
+
+        return new AhoCorasickMatcher(patternList.toArray(new String[0]), rootNext, edgeStart, edgeChars,
+                edgeTargets, fail, output);
+    }
+
+    /**
+     * Index of the first pattern found in text, or -1
+     */
+    int find(CharSequence text) {
+        return find(text, 0, text.length());
+    }
+
+    /**
+     * Index of the first pattern found in text[start, end), or -1
+     */
+    int find(CharSequence text, int start, int end) {
+        if (patterns.length == 0)
+            return -1;
+
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = DomainTrie.lower(text.charAt(i));
+            state = next(state, c);
+            if (output[state] >= 0) {
+                return output[state];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * State after reading c in state; 0 is the start state. Lets a caller
+     * drive the automaton itself and see every match, not only the first.
+     */
+    int advance(int state, char c) {
+        return next(state, DomainTrie.lower(c));
+    }
+
+    /**
+     * Pattern that ends at this state, or -1
+     */
+    int matchAt(int state) {
+        return output[state];
+    }
+
+    String pattern(int index) {
+        return patterns[index];
+    }
+
+    int size() {
+        return patterns.length;
+    }
+
+    boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    private int next(int state, char c) {
+        while (state != 0) {
+            int target = step(edgeStart, edgeChars, edgeTargets, state, c);
+            if (target >= 0)
+                return target;
+            state = fail[state];
+        }
+        if (c < 128)
+            return rootNext[c];
+        int target = step(edgeStart, edgeChars, edgeTargets, 0, c);
+        return target < 0 ? 0 : target;
+    }
+
+    private static int step(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int state, char c) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char mc = edgeChars[mid];
+            if (mc < c) {
+                lo = mid + 1;
+            } else if (mc > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+}
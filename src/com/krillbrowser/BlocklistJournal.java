@@ -0,0 +1,164 @@
+package com.krillbrowser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+
+/**
+ * BlocklistJournal - Append-only log of blocklist edits
+ *
+ * Each edit is one text line: "+entry" for an added rule, "-entry" for a
+ * removed one. blocklist.txt is the base list; at startup the journal is
+ * replayed on top of it. Once the journal grows past a threshold the
+ * manager compacts it: the current rules are written back to blocklist.txt
+ * and the journal records they cover are dropped.
+ *
+ * Replaying a record that is already reflected in the base list is
+ * harmless (adds and removes are idempotent), so a crash between rewriting
+ * blocklist.txt and trimming the journal loses nothing. A final line without
+ * a newline is a torn write: it is cut off before the journal is replayed
+ * or appended to, so the next record starts on a line of its own.
+ */
+final class BlocklistJournal {
+
+    /**
+     * Receives journal records in the order they were written
+     */
+    interface Replay {
+        void apply(boolean add, String entry);
+    }
+
+    private final Path file;
+    private FileChannel channel;
+
+    BlocklistJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Append one record per entry with a single sequential write
+     */
+    synchronized void append(boolean add, Collection<String> entries) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (String entry : entries) {
+            String rule = entry.trim();
+            if (!rule.isEmpty() && rule.indexOf('\n') < 0) {
+                records.append(add ? '+' : '-').append(rule).append('\n');
+            }
+        }
+        if (records.length() == 0)
+            return;
+
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(records.toString());
+        FileChannel out = channel();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Feed every complete record to replay
+     */
+    synchronized void replay(Replay replay) throws IOException {
+        if (!Files.exists(file))
+            return;
+        dropTornRecord();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c != '\n') {
+                    line.append((char) c);
+                    continue;
+                }
+                if (line.length() > 1 && (line.charAt(0) == '+' || line.charAt(0) == '-')) {
+                    replay.apply(line.charAt(0) == '+', line.substring(1));
+                }
+                line.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Current journal length in bytes; records before this offset are covered
+     * by any rule set published before the call
+     */
+    synchronized long size() throws IOException {
+        if (channel != null)
+            return channel.size();
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    /**
+     * Drop the records before offset (now part of blocklist.txt), keeping any
+     * appended since
+     */
+    synchronized void discardBefore(long offset) throws IOException {
+        if (!Files.exists(file))
+            return;
+        close();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = Math.min(offset, in.size());
+            while (position < in.size()) {
+                position += in.transferTo(position, in.size() - position, out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Truncate the journal after its last newline, dropping a record that a
+     * crash left half written
+     */
+    private void dropTornRecord() throws IOException {
+        if (!Files.exists(file))
+            return;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = out.size();
+            long end = size;
+            ByteBuffer chunk = ByteBuffer.allocate(4096);
+            while (end > 0) {
+                long start = Math.max(0, end - chunk.capacity());
+                chunk.clear().limit((int) (end - start));
+                while (chunk.hasRemaining() && out.read(chunk, start + chunk.position()) >= 0) {
+                }
+                int newline = chunk.position() - 1;
+                while (newline >= 0 && chunk.get(newline) != '\n') {
+                    newline--;
+                }
+                if (newline >= 0) {
+                    end = start + newline + 1;
+                    break;
+                }
+                end = start;
+            }
+            if (end < size) {
+                System.err.println("Dropping incomplete blocklist journal record (" + (size - end) + " bytes)");
+                out.truncate(end);
+            }
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            dropTornRecord();
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
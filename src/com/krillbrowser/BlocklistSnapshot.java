@@ -0,0 +1,549 @@
+package com.krillbrowser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * BlocklistSnapshot - Precompiled, memory-mapped form of blocklist.txt
+ *
+ * Hosts are stored reversed ("moc.elpmaxe"), sorted and front-coded in
+ * blocks of 16 with an index of block offsets. The file is mapped read-only
+ * and searched in place, so startup costs one mmap instead of parsing the
+ * text list, and the hosts never become Strings on the heap.
+ *
+ * Layout (big-endian):
+ * magic, version, host count, block count, source size, source mtime,
+ * extra rule count, extra rules (u16 length + UTF-8),
+ * block offsets (int per block, relative to the data section),
+ * data: per block a full first key (u8 length + bytes), then
+ * (u8 shared prefix, u8 suffix length, suffix bytes) for the rest.
+ *
+ * Entries that are not plain ASCII hosts (path rules, filter syntax, and
+ * "-entry" removals of built-in rules) are kept verbatim in the extra rules
+ * section.
+ *
+ * A mapped file cannot be replaced on Windows, so a recompiled snapshot is
+ * never written over the one in use: "blocklist.bin" is compiled to
+ * "blocklist.1.bin", then "blocklist.2.bin", and so on, and the newest
+ * version is loaded. Older versions are deleted once nothing maps them.
+ */
+final class BlocklistSnapshot {
+
+    private static final int MAGIC = 0x4B52424C; // "KRBL"
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 16;
+    private static final int MAX_KEY = 255;
+
+    private static final ThreadLocal<byte[][]> SCRATCH =
+            ThreadLocal.withInitial(() -> new byte[][] { new byte[MAX_KEY], new byte[MAX_KEY] });
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int blockCount;
+    private final int indexStart;
+    private final int dataStart;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final List<String> extraRules;
+
+    private BlocklistSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < 36 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a blocklist snapshot");
+
+        count = buffer.getInt(8);
+        blockCount = buffer.getInt(12);
+        sourceSize = buffer.getLong(16);
+        sourceModified = buffer.getLong(24);
+        int extraCount = buffer.getInt(32);
+        int size = buffer.capacity();
+        if (count < 0 || blockCount != (count + BLOCK_SIZE - 1) / BLOCK_SIZE || extraCount < 0
+                || extraCount > size / 2)
+            throw new IOException("Corrupt blocklist snapshot header");
+
+        int pos = 36;
+        List<String> extras = new ArrayList<>(extraCount);
+        for (int i = 0; i < extraCount; i++) {
+            if (pos + 2 > size || pos + 2 + (buffer.getShort(pos) & 0xFFFF) > size)
+                throw new IOException("Truncated blocklist snapshot");
+            int length = buffer.getShort(pos) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) {
+                bytes[j] = buffer.get(pos + 2 + j);
+            }
+            extras.add(new String(bytes, StandardCharsets.UTF_8));
+            pos += 2 + length;
+        }
+        extraRules = Collections.unmodifiableList(extras);
+        indexStart = pos;
+        if (indexStart + (long) blockCount * 4 > size)
+            throw new IOException("Truncated blocklist snapshot");
+        dataStart = indexStart + blockCount * 4;
+        checkBlocks(size);
+    }
+
+    /**
+     * Make sure every block starts inside the file and the last one ends
+     * inside it, so a truncated or damaged file is rejected here rather
+     * than failing a lookup later. Only the index and the last block are
+     * read; the rest of the data stays unpaged.
+     */
+    private void checkBlocks(int size) throws IOException {
+        int previous = -1;
+        for (int block = 0; block < blockCount; block++) {
+            int offset = buffer.getInt(indexStart + block * 4);
+            if (offset <= previous || dataStart + (long) offset >= size)
+                throw new IOException("Truncated blocklist snapshot");
+            previous = offset;
+        }
+        if (blockCount == 0)
+            return;
+
+        // Truncation always cuts the last block, which runs to the end of the file
+        int pos = dataStart + previous;
+        int remaining = count - (blockCount - 1) * BLOCK_SIZE;
+        int length = 0;
+        for (int i = 0; i < remaining; i++) {
+            int header = i == 0 ? 1 : 2;
+            if (pos + header > size)
+                throw new IOException("Truncated blocklist snapshot");
+            int shared = i == 0 ? 0 : buffer.get(pos) & 0xFF;
+            int suffix = buffer.get(pos + header - 1) & 0xFF;
+            if (shared > length || shared + suffix > MAX_KEY || pos + header + suffix > size)
+                throw new IOException("Truncated blocklist snapshot");
+            length = shared + suffix;
+            pos += header + suffix;
+        }
+    }
+
+    /**
+     * Newest compiled version of a snapshot ("blocklist.bin" or
+     * "blocklist.<n>.bin"), or null if there is none
+     */
+    static Path latestVersion(Path base) throws IOException {
+        Path latest = Files.exists(base) ? base : null;
+        long latestNumber = 0;
+        for (Path version : versions(base)) {
+            long number = versionNumber(base, version);
+            if (number > latestNumber) {
+                latest = version;
+                latestNumber = number;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Path for a snapshot version newer than every existing one
+     */
+    static Path nextVersion(Path base) throws IOException {
+        long number = 0;
+        for (Path version : versions(base)) {
+            number = Math.max(number, versionNumber(base, version));
+        }
+        return base.resolveSibling(versionPrefix(base) + (number + 1) + ".bin");
+    }
+
+    /**
+     * Delete every version of a snapshot except keep. Files that are still
+     * mapped cannot be deleted on Windows; they go on a later call.
+     */
+    static void deleteOtherVersions(Path base, Path keep) {
+        List<Path> others = new ArrayList<>();
+        try {
+            others.addAll(versions(base));
+        } catch (IOException e) {
+            return;
+        }
+        others.add(base);
+        for (Path version : others) {
+            if (version.equals(keep))
+                continue;
+            try {
+                Files.deleteIfExists(version);
+            } catch (IOException e) {
+                // Still mapped; retried next time
+            }
+        }
+    }
+
+    private static List<Path> versions(Path base) throws IOException {
+        List<Path> versions = new ArrayList<>();
+        Path dir = base.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir))
+            return versions;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                entry -> versionNumber(base, entry) > 0)) {
+            for (Path file : files) {
+                versions.add(file);
+            }
+        }
+        return versions;
+    }
+
+    // "blocklist." for blocklist.bin
+    private static String versionPrefix(Path base) {
+        String name = base.getFileName().toString();
+        return (name.endsWith(".bin") ? name.substring(0, name.length() - 4) : name) + ".";
+    }
+
+    // n for "<prefix>n.bin", 0 for anything else
+    private static long versionNumber(Path base, Path file) {
+        String name = file.getFileName().toString();
+        String prefix = versionPrefix(base);
+        if (!name.startsWith(prefix) || !name.endsWith(".bin") || name.length() <= prefix.length() + 4)
+            return 0;
+        String digits = name.substring(prefix.length(), name.length() - 4);
+        if (digits.length() > 18)
+            return 0;
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9')
+                return 0;
+        }
+        return Long.parseLong(digits);
+    }
+
+    /**
+     * Map a snapshot file read-only
+     */
+    static BlocklistSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BlocklistSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Compile a snapshot from blocklist entries, stamped with the source
+     * file's size and mtime so staleness can be detected at startup
+     */
+    static void write(Path file, Collection<String> entries, long sourceSize, long sourceModified)
+            throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<String> extras = new ArrayList<>();
+        for (String entry : entries) {
+            String host = entry.trim().toLowerCase();
+            if (host.isEmpty() || host.startsWith("!")
+                    || (host.startsWith("#") && !AdvancedSecurityManager.isElementHiding(host)))
+                continue;
+            if (isPlainHost(host) && !host.startsWith(AdvancedSecurityManager.REMOVED_PREFIX)) {
+                keys.add(new StringBuilder(DomainTrie.normalize(host)).reverse().toString());
+            } else {
+                extras.add(entry.trim());
+            }
+        }
+        Collections.sort(keys);
+
+        Iterator<String> sorted = keys.iterator();
+        write(file, into -> {
+            if (!sorted.hasNext())
+                return -1;
+            String key = sorted.next();
+            for (int i = 0; i < key.length(); i++) {
+                into[i] = (byte) key.charAt(i);
+            }
+            return key.length();
+        }, extras, sourceSize, sourceModified);
+    }
+
+    /**
+     * Compile a snapshot from reversed host keys delivered in sorted order
+     *
+     * @return number of distinct hosts written
+     */
+    static int write(Path file, KeySource keys, long sourceSize, long sourceModified) throws IOException {
+        return write(file, keys, Collections.emptyList(), sourceSize, sourceModified);
+    }
+
+    private static int write(Path file, KeySource keys, List<String> extras, long sourceSize,
+            long sourceModified) throws IOException {
+        // Front-coded keys stream to a side file; the block index is only
+        // known at the end and goes before them in the snapshot
+        Path data = file.resolveSibling(file.getFileName() + ".data.tmp");
+        int[] offsets = new int[64];
+        int blocks = 0;
+        int written = 0;
+        try (CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(data)))) {
+            byte[] previous = new byte[MAX_KEY];
+            byte[] bytes = new byte[MAX_KEY];
+            int previousLength = -1;
+            int length;
+            while ((length = keys.next(bytes)) >= 0) {
+                if (length == previousLength && Arrays.equals(bytes, 0, length, previous, 0, length))
+                    continue;
+
+                if (written % BLOCK_SIZE == 0) {
+                    if (blocks == offsets.length)
+                        offsets = Arrays.copyOf(offsets, blocks * 2);
+                    offsets[blocks++] = out.count;
+                    out.write(length);
+                    out.write(bytes, 0, length);
+                } else {
+                    int shared = 0;
+                    int max = Math.min(previousLength, length);
+                    while (shared < max && previous[shared] == bytes[shared])
+                        shared++;
+                    out.write(shared);
+                    out.write(length - shared);
+                    out.write(bytes, shared, length - shared);
+                }
+                byte[] swap = previous;
+                previous = bytes;
+                bytes = swap;
+                previousLength = length;
+                written++;
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(written);
+                out.writeInt(blocks);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceModified);
+                out.writeInt(extras.size());
+                for (String extra : extras) {
+                    byte[] extraBytes = extra.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(extraBytes.length);
+                    out.write(extraBytes);
+                }
+                for (int i = 0; i < blocks; i++) {
+                    out.writeInt(offsets[i]);
+                }
+                Files.copy(data, out);
+            }
+        } finally {
+            Files.deleteIfExists(data);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Supplies reversed host keys (ASCII bytes) in ascending order to write().
+     * Repeated keys are allowed and written once.
+     */
+    interface KeySource {
+        /**
+         * Copy the next key into into, returning its length, or -1 at the end
+         */
+        int next(byte[] into);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        int count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Whether this snapshot was compiled from the current version of source
+     */
+    boolean isFreshFor(Path source) {
+        try {
+            return Files.size(source) == sourceSize
+                    && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    List<String> getExtraRules() {
+        return extraRules;
+    }
+
+    /**
+     * Find the shortest stored suffix of host[start, end), like DomainTrie.matchSuffix
+     *
+     * @return start index of the matched suffix, or -1
+     */
+    int matchSuffix(CharSequence host, int start, int end) {
+        int length = end - start;
+        if (count == 0 || length <= 0 || length > MAX_KEY)
+            return -1;
+
+        byte[][] scratch = SCRATCH.get();
+        byte[] key = scratch[0];
+        for (int i = 0; i < length; i++) {
+            char c = DomainTrie.lower(host.charAt(end - 1 - i));
+            if (c > 0x7F)
+                return -1;
+            key[i] = (byte) c;
+        }
+
+        // Each label boundary of the reversed host is a candidate suffix
+        for (int k = 1; k <= length; k++) {
+            if ((k == length || key[k] == '.') && contains(key, k, scratch[1])) {
+                return end - k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Exact lookup of a (forward) host
+     */
+    boolean contains(CharSequence host) {
+        int length = host.length();
+        if (length == 0 || length > MAX_KEY)
+            return false;
+        byte[][] scratch = SCRATCH.get();
+        for (int i = 0; i < length; i++) {
+            scratch[0][i] = (byte) DomainTrie.lower(host.charAt(length - 1 - i));
+        }
+        return contains(scratch[0], length, scratch[1]);
+    }
+
+    /**
+     * Visit every host in the snapshot (decodes; for UI and export only)
+     */
+    void forEachHost(Consumer<String> action) {
+        forEachKey((key, length) -> {
+            StringBuilder host = new StringBuilder(length);
+            for (int j = length - 1; j >= 0; j--)
+                host.append((char) key[j]);
+            action.accept(host.toString());
+        });
+    }
+
+    /**
+     * Visit every stored key as reversed ASCII bytes, without allocating per key
+     */
+    void forEachKey(KeyVisitor visitor) {
+        byte[] current = new byte[MAX_KEY];
+        for (int block = 0; block < blockCount; block++) {
+            int pos = dataStart + buffer.getInt(indexStart + block * 4);
+            int remaining = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+            int length = 0;
+            for (int i = 0; i < remaining; i++) {
+                if (i == 0) {
+                    length = buffer.get(pos++) & 0xFF;
+                    for (int j = 0; j < length; j++)
+                        current[j] = buffer.get(pos++);
+                } else {
+                    int shared = buffer.get(pos++) & 0xFF;
+                    int suffix = buffer.get(pos++) & 0xFF;
+                    for (int j = 0; j < suffix; j++)
+                        current[shared + j] = buffer.get(pos++);
+                    length = shared + suffix;
+                }
+                visitor.accept(current, length);
+            }
+        }
+    }
+
+    /**
+     * Receives reversed host keys; the array is reused between calls
+     */
+    interface KeyVisitor {
+        void accept(byte[] key, int length);
+    }
+
+    private boolean contains(byte[] key, int keyLength, byte[] current) {
+        // Last block whose first key is <= key
+        int lo = 0;
+        int hi = blockCount - 1;
+        int block = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareFirstKey(mid, key, keyLength);
+            if (cmp == 0)
+                return true;
+            if (cmp < 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0)
+            return false;
+
+        int pos = dataStart + buffer.getInt(indexStart + block * 4);
+        int remaining = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+        int length = buffer.get(pos++) & 0xFF;
+        for (int j = 0; j < length; j++)
+            current[j] = buffer.get(pos++);
+
+        for (int i = 1; i < remaining; i++) {
+            int shared = buffer.get(pos++) & 0xFF;
+            int suffix = buffer.get(pos++) & 0xFF;
+            for (int j = 0; j < suffix; j++)
+                current[shared + j] = buffer.get(pos++);
+            length = shared + suffix;
+
+            int cmp = compare(current, length, key, keyLength);
+            if (cmp == 0)
+                return true;
+            if (cmp > 0)
+                return false;
+        }
+        return false;
+    }
+
+    private int compareFirstKey(int block, byte[] key, int keyLength) {
+        int pos = dataStart + buffer.getInt(indexStart + block * 4);
+        int length = buffer.get(pos) & 0xFF;
+        int max = Math.min(length, keyLength);
+        for (int i = 0; i < max; i++) {
+            int a = buffer.get(pos + 1 + i) & 0xFF;
+            int b = key[i] & 0xFF;
+            if (a != b)
+                return a - b;
+        }
+        return length - keyLength;
+    }
+
+    private static int compare(byte[] a, int aLength, byte[] b, int bLength) {
+        int max = Math.min(aLength, bLength);
+        for (int i = 0; i < max; i++) {
+            int x = a[i] & 0xFF;
+            int y = b[i] & 0xFF;
+            if (x != y)
+                return x - y;
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Bare ASCII host names go into the sorted key section
+     */
+    static boolean isPlainHost(String entry) {
+        if (entry.length() > MAX_KEY)
+            return false;
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '_'
+                    || (c == '*' && i == 0)))
+                return false;
+        }
+        return true;
+    }
+}
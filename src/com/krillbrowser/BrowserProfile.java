@@ -41,10 +41,23 @@ public class BrowserProfile {
     }
 
     private static BrowserProfile instance;
-    private ProfileType currentProfile = ProfileType.DEFAULT;
+    private volatile ProfileType currentProfile = ProfileType.DEFAULT;
     private Map<ProfileType, ProfileSettings> profileSettings;
     private Path settingsFile;
 
+    // Compiled site rules for the current profile, rebuilt and published as
+    // one immutable SiteRules on profile switch (which may come from a JMX
+    // thread while request threads read them)
+    private volatile SiteRules siteRules;
+
+    // Host -> host-rule verdict for the current profile
+    private final VerdictCache<SiteMatch> hostVerdicts =
+            new VerdictCache<>("profile", VerdictCache.DEFAULT_CAPACITY);
+
+    private enum SiteMatch {
+        NONE, BLOCKED, ALLOWED, BLOCKED_AND_ALLOWED
+    }
+
     // Sites to block per profile
     private static final String[] GAMING_BLOCKED = {
             "facebook.com", "twitter.com", "instagram.com", "tiktok.com",
@@ -67,6 +80,7 @@ public class BrowserProfile {
         initializeProfiles();
         settingsFile = getDataDirectory().resolve("profile.txt");
         loadCurrentProfile();
+        compileSiteRules();
     }
 
     public static synchronized BrowserProfile getInstance() {
@@ -128,9 +142,11 @@ public class BrowserProfile {
         profileSettings.put(ProfileType.SECURE, secureSettings);
     }
 
-    public void switchProfile(ProfileType profile) {
+    public synchronized void switchProfile(ProfileType profile) {
         this.currentProfile = profile;
         applyProfileSettings();
+        compileSiteRules();
+        VerdictCache.bumpGeneration();
         saveCurrentProfile();
         System.out.println("🦐 Switched to profile: " + profile.getDisplayName());
     }
@@ -159,29 +175,65 @@ public class BrowserProfile {
     public boolean shouldBlockSite(String url) {
         if (url == null)
             return false;
-        String lowerUrl = url.toLowerCase();
+        return shouldBlockSite(ParsedUrl.parse(url));
+    }
 
-        ProfileSettings settings = getCurrentSettings();
+    boolean shouldBlockSite(ParsedUrl parsed) {
+        String url = parsed.url();
+        String host = parsed.host();
+        // Generation before rules, so a verdict from these rules is never
+        // cached under a newer profile's generation
+        long generation = VerdictCache.currentGeneration();
+        SiteRules rules = siteRules;
+        SiteMatch hostMatch = hostVerdicts.get(host);
+        if (hostMatch == null) {
+            hostMatch = rules.matchHost(host);
+            hostVerdicts.put(host, hostMatch, generation);
+        }
+
+        // Check blocked sites for this profile
+        boolean blocked = hostMatch == SiteMatch.BLOCKED || hostMatch == SiteMatch.BLOCKED_AND_ALLOWED
+                || rules.blockedPaths.find(url) >= 0;
+        if (!blocked)
+            return false;
 
         // Check if explicitly allowed (coding mode)
-        if (settings.allowedSites != null) {
-            for (String allowed : settings.allowedSites) {
-                if (lowerUrl.contains(allowed)) {
-                    return false;
-                }
+        return hostMatch != SiteMatch.ALLOWED && hostMatch != SiteMatch.BLOCKED_AND_ALLOWED
+                && rules.allowedPaths.find(url) < 0;
+    }
+
+    /**
+     * Compile the current profile's allowed/blocked sites into lookup indexes
+     */
+    private void compileSiteRules() {
+        ProfileSettings settings = getCurrentSettings();
+        Set<String> blockedSites = settings.blockedSites != null ? settings.blockedSites : Collections.emptySet();
+        Set<String> allowedSites = settings.allowedSites != null ? settings.allowedSites : Collections.emptySet();
+
+        DomainTrie blockedHostIndex = new DomainTrie();
+        HostBloomFilter bloom = new HostBloomFilter(blockedSites.size() * 2L);
+        List<String> blockedPathRules = new ArrayList<>();
+        for (String site : blockedSites) {
+            if (site.indexOf('/') >= 0) {
+                blockedPathRules.add(site);
+            } else {
+                blockedHostIndex.add(site);
+                bloom.add(DomainTrie.normalize(site));
             }
         }
 
-        // Check blocked sites for this profile
-        if (settings.blockedSites != null) {
-            for (String blocked : settings.blockedSites) {
-                if (lowerUrl.contains(blocked)) {
-                    return true;
-                }
+        DomainTrie allowedHostIndex = new DomainTrie();
+        List<String> allowedPathRules = new ArrayList<>();
+        for (String site : allowedSites) {
+            if (site.indexOf('/') >= 0) {
+                allowedPathRules.add(site);
+            } else {
+                allowedHostIndex.add(site);
             }
         }
 
-        return false;
+        siteRules = new SiteRules(blockedHostIndex, bloom, AhoCorasickMatcher.compile(blockedPathRules),
+                allowedHostIndex, AhoCorasickMatcher.compile(allowedPathRules));
     }
 
     public String getBlockMessage() {
@@ -228,6 +280,39 @@ public class BrowserProfile {
         }
     }
 
+    /**
+     * One profile's compiled site rules: host entries match the host and its
+     * subdomains, entries with a path match as substrings. Never modified
+     * after construction.
+     */
+    private static final class SiteRules {
+        final DomainTrie blockedHosts;
+        final HostBloomFilter blockedBloom;
+        final AhoCorasickMatcher blockedPaths;
+        final DomainTrie allowedHosts;
+        final AhoCorasickMatcher allowedPaths;
+
+        SiteRules(DomainTrie blockedHosts, HostBloomFilter blockedBloom, AhoCorasickMatcher blockedPaths,
+                DomainTrie allowedHosts, AhoCorasickMatcher allowedPaths) {
+            this.blockedHosts = blockedHosts;
+            this.blockedBloom = blockedBloom;
+            this.blockedPaths = blockedPaths;
+            this.allowedHosts = allowedHosts;
+            this.allowedPaths = allowedPaths;
+        }
+
+        SiteMatch matchHost(String host) {
+            int length = host.length();
+            // The Bloom filter rules out most hosts before the exact lookup
+            boolean blocked = blockedBloom.mightContainSuffixOf(host, 0, length)
+                    && blockedHosts.matchSuffix(host, 0, length) >= 0;
+            boolean allowed = allowedHosts.matchSuffix(host, 0, length) >= 0;
+            if (blocked)
+                return allowed ? SiteMatch.BLOCKED_AND_ALLOWED : SiteMatch.BLOCKED;
+            return allowed ? SiteMatch.ALLOWED : SiteMatch.NONE;
+        }
+    }
+
     /**
      * Profile-specific settings
      */
@@ -10,6 +10,8 @@ import javafx.scene.layout.Priority;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 
+import java.util.Objects;
+
 /**
  * Represents a single browser tab with its own WebView and navigation controls.
  */
@@ -25,6 +27,11 @@ public class BrowserTab {
     private Button bookmarkButton;
     private Label securityIndicator;
     private KrillBrowser browser;
+    private final SecurityStats stats = SecurityStats.forTab();
+
+    // nanoTime of the last load() call and of the engine starting it, or 0
+    private long loadRequestedAt;
+    private long loadStartedAt;
 
     public BrowserTab(String url, KrillBrowser browser) {
         this.browser = browser;
@@ -137,8 +144,14 @@ public class BrowserTab {
     }
 
     private void setupListeners() {
+        // Element hiding: the location changes before the new document is
+        // parsed, so the user stylesheet is in place before anything is laid out
+        webEngine.locationProperty().addListener((obs, oldLocation, newLocation) -> applyCosmeticFilters(newLocation));
+
         // Listen for page load state changes
         webEngine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
+            recordLoadTiming(newState);
+
             if (newState == Worker.State.RUNNING) {
                 reloadButton.setText("✕");
                 reloadButton.setTooltip(new Tooltip("Stop"));
@@ -147,16 +160,6 @@ public class BrowserTab {
             }
 
             if (newState == Worker.State.SUCCEEDED) {
-                // PERFORMANCE: Inject lightweight ad cleaning script
-                // This stops layout thrashing and hides heavy ad elements
-                webEngine.executeScript(
-                        "if(window.location.hostname.includes('youtube.com')) {" +
-                                "  var style = document.createElement('style');" +
-                                "  style.innerHTML = '.ytd-ad-slot-renderer, ytd-promoted-sparkles-web-renderer, .ytd-in-feed-ad-layout-renderer { display: none !important; }';"
-                                +
-                                "  document.head.appendChild(style);" +
-                                "}");
-
                 // Update URL field
                 String currentUrl = webEngine.getLocation();
                 urlField.setText(currentUrl);
@@ -195,6 +198,37 @@ public class BrowserTab {
         });
     }
 
+    /**
+     * Engine stages of a navigation: load() until the engine starts loading,
+     * then until the document has loaded
+     */
+    private void recordLoadTiming(Worker.State state) {
+        long now = System.nanoTime();
+        if (state == Worker.State.RUNNING) {
+            if (loadRequestedAt != 0) {
+                NavigationTimings.record(NavigationTimings.Stage.ENGINE_LOAD_START, now - loadRequestedAt);
+                loadRequestedAt = 0;
+            }
+            loadStartedAt = now;
+        } else if (state == Worker.State.SUCCEEDED && loadStartedAt != 0) {
+            NavigationTimings.record(NavigationTimings.Stage.LOAD_FINISHED, now - loadStartedAt);
+            loadStartedAt = 0;
+        } else if (state == Worker.State.FAILED || state == Worker.State.CANCELLED) {
+            loadStartedAt = 0;
+        }
+    }
+
+    /**
+     * Install the precompiled element-hiding stylesheet for a page's host
+     */
+    private void applyCosmeticFilters(String url) {
+        CosmeticFilterEngine.Style style = AdvancedSecurityManager.getInstance().getCosmeticStyle(url);
+        String location = style != null ? style.dataUrl() : null;
+        if (!Objects.equals(location, webEngine.getUserStyleSheetLocation())) {
+            webEngine.setUserStyleSheetLocation(location);
+        }
+    }
+
     private void updateSecurityIndicator(String url) {
         if (url != null && url.startsWith("https://")) {
             securityIndicator.setText("🔒");
@@ -248,59 +282,38 @@ public class BrowserTab {
         AdvancedSecurityManager advSecurity = AdvancedSecurityManager.getInstance();
         SecurityManager security = SecurityManager.getInstance();
 
-        // Add protocol if missing
-        if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            // Check if it looks like a URL or a search query
-            if (url.contains(".") && !url.contains(" ")) {
-                url = "https://" + url;
-            } else {
-                // Use DuckDuckGo for privacy-focused search
-                url = "https://duckduckgo.com/?q=" + url.replace(" ", "+");
-            }
-        }
-
-        // HTTPS-only mode check
-        if (advSecurity.isHttpsOnly() && url.startsWith("http://")) {
-            showSecurityWarning(
-                    "🔒 HTTPS-Only Mode\n\nThis site uses insecure HTTP. Connection blocked.\n\nURL: " + url);
-            return;
-        }
-
-        // Upgrade HTTP to HTTPS
-        url = advSecurity.upgradeToHttps(url);
-
-        // Clean tracking parameters from URL
-        url = advSecurity.cleanUrl(url);
-
-        // Check profile-based site blocking (Gaming blocks social, Work blocks
-        // entertainment)
-        BrowserProfile profile = BrowserProfile.getInstance();
-        if (profile.shouldBlockSite(url)) {
-            showProfileWarning(profile.getBlockMessage());
-            return;
-        }
-
-        // PHISHING DETECTION - Check for lookalike domains and scams
-        PhishingDetector.PhishingResult phishingResult = PhishingDetector.getInstance().checkUrl(url);
-        if (phishingResult.isPhishing) {
-            showSecurityWarning("🎣 PHISHING ALERT!\n\n" + phishingResult.reason +
-                    "\n\nConfidence: " + phishingResult.confidence + "%\n\nURL: " + url +
-                    "\n\nThis site may be trying to steal your information!");
-            return;
-        }
-
-        // Block trackers/malware
-        if (advSecurity.shouldBlockUrl(url) || security.shouldBlockUrl(url)) {
-            // SILENT BLOCKING: Do not show alert for background resource blocks
-            // (ads/trackers)
-            // This prevents "flashing" and UI lag when sites like YouTube load ads in
-            // background
-            System.out.println("🛡️ Silently blocked: " + url);
-
-            // Only show alert for MAIN page navigation, not resources
-            // This is a heuristic - if it's the main URL loading, we warn.
-            // If it's a sub-resource, we just block silently.
-            return;
+        // One pass over every security check: protocol fix-up, HTTPS upgrade,
+        // tracking-parameter cleanup, profile rules, blocklists, phishing
+        NavigationPolicy.Decision decision = NavigationPolicy.getInstance().evaluate(url, stats);
+        url = decision.url;
+
+        switch (decision.action) {
+            case HTTPS_ONLY:
+                showSecurityWarning(
+                        "🔒 HTTPS-Only Mode\n\nThis site uses insecure HTTP. Connection blocked.\n\nURL: " + url);
+                return;
+
+            case PROFILE_BLOCKED:
+                // Gaming blocks social, Work blocks entertainment
+                showProfileWarning(decision.reason);
+                return;
+
+            case BLOCKED:
+                // SILENT BLOCKING: Do not show alert for background resource blocks
+                // (ads/trackers)
+                // This prevents "flashing" and UI lag when sites like YouTube load ads in
+                // background; NavigationPolicy has already logged the block
+                return;
+
+            case PHISHING:
+                // Lookalike domains and scams
+                showSecurityWarning("🎣 PHISHING ALERT!\n\n" + decision.reason +
+                        "\n\nConfidence: " + decision.confidence + "%\n\nURL: " + url +
+                        "\n\nThis site may be trying to steal your information!");
+                return;
+
+            default:
+                break;
         }
 
         // Apply JavaScript setting
@@ -315,6 +328,8 @@ public class BrowserTab {
             urlField.setText("🕵️ " + url);
         }
 
+        applyCosmeticFilters(url);
+        loadRequestedAt = System.nanoTime();
         webEngine.load(url);
     }
 
@@ -369,4 +384,8 @@ public class BrowserTab {
     public WebEngine getWebEngine() {
         return webEngine;
     }
+
+    public SecurityStats getStats() {
+        return stats;
+    }
 }
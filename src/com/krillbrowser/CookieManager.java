@@ -14,6 +14,7 @@ public class CookieManager {
     private static CookieManager instance;
     private Map<String, Map<String, String>> cookies; // domain -> (name -> value)
     private Path cookiesFile;
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
 
     private CookieManager() {
         cookies = new HashMap<>();
@@ -44,21 +45,25 @@ public class CookieManager {
         return dataDir;
     }
 
-    public void setCookie(String domain, String name, String value) {
+    public synchronized void setCookie(String domain, String name, String value) {
         cookies.computeIfAbsent(domain, k -> new HashMap<>()).put(name, value);
         saveCookies();
     }
 
-    public String getCookie(String domain, String name) {
+    public synchronized String getCookie(String domain, String name) {
         Map<String, String> domainCookies = cookies.get(domain);
         return domainCookies != null ? domainCookies.get(name) : null;
     }
 
-    public Map<String, String> getCookiesForDomain(String domain) {
-        return cookies.getOrDefault(domain, new HashMap<>());
+    /**
+     * Copy of a domain's cookies (name -> value)
+     */
+    public synchronized Map<String, String> getCookiesForDomain(String domain) {
+        Map<String, String> domainCookies = cookies.get(domain);
+        return domainCookies != null ? new HashMap<>(domainCookies) : new HashMap<>();
     }
 
-    public void removeCookie(String domain, String name) {
+    public synchronized void removeCookie(String domain, String name) {
         Map<String, String> domainCookies = cookies.get(domain);
         if (domainCookies != null) {
             domainCookies.remove(name);
@@ -69,12 +74,12 @@ public class CookieManager {
         saveCookies();
     }
 
-    public void clearCookiesForDomain(String domain) {
+    public synchronized void clearCookiesForDomain(String domain) {
         cookies.remove(domain);
         saveCookies();
     }
 
-    public void clearAllCookies() {
+    public synchronized void clearAllCookies() {
         cookies.clear();
         saveCookies();
 
@@ -89,7 +94,7 @@ public class CookieManager {
         }
     }
 
-    public List<String> getAllCookieInfo() {
+    public synchronized List<String> getAllCookieInfo() {
         List<String> cookieInfo = new ArrayList<>();
         for (Map.Entry<String, Map<String, String>> domainEntry : cookies.entrySet()) {
             String domain = domainEntry.getKey();
@@ -100,8 +105,37 @@ public class CookieManager {
         return cookieInfo;
     }
 
-    public Set<String> getDomains() {
-        return cookies.keySet();
+    /**
+     * Copy of the domains that have cookies
+     */
+    public synchronized Set<String> getDomains() {
+        return new HashSet<>(cookies.keySet());
+    }
+
+    public synchronized int getCookieCount() {
+        int count = 0;
+        for (Map<String, String> domainCookies : cookies.values()) {
+            count += domainCookies.size();
+        }
+        return count;
+    }
+
+    public synchronized int getDomainCount() {
+        return cookies.size();
+    }
+
+    /**
+     * Write cookies.txt now
+     */
+    public synchronized void flush() {
+        saveCookies();
+    }
+
+    /**
+     * How long writing cookies.txt has taken (every change rewrites it)
+     */
+    public LatencyHistogram.Snapshot getFlushLatency() {
+        return flushLatency.snapshot();
     }
 
     private void loadCookies() {
@@ -128,6 +162,7 @@ public class CookieManager {
     }
 
     private void saveCookies() {
+        long started = System.nanoTime();
         try {
             List<String> lines = new ArrayList<>();
             for (Map.Entry<String, Map<String, String>> domainEntry : cookies.entrySet()) {
@@ -140,5 +175,6 @@ public class CookieManager {
         } catch (IOException e) {
             System.err.println("Failed to save cookies: " + e.getMessage());
         }
+        flushLatency.record(System.nanoTime() - started);
     }
 }
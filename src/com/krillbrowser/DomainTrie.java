@@ -0,0 +1,246 @@
+package com.krillbrowser;
+
+/**
+ * DomainTrie - Host-suffix index keyed on reversed DNS labels
+ *
+ * "ads.tracker.example.com" is walked as com -> example -> tracker -> ads,
+ * so a lookup costs one step per label no matter how many hosts are stored.
+ * A rule for "example.com" matches the host itself and every subdomain, but
+ * never "notexample.com" or "example.com.evil.org".
+ *
+ * Lookups lowercase on the fly and work on a region of any CharSequence,
+ * so checking the host inside a URL does not allocate.
+ */
+final class DomainTrie {
+
+    private final Node root;
+    private int size;
+
+    DomainTrie() {
+        root = new Node();
+    }
+
+    private DomainTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Independent deep copy, for copy-on-write rule sets
+     */
+    DomainTrie copy() {
+        return new DomainTrie(root.copy(), size);
+    }
+
+    /**
+     * Add a host rule. Returns false if it was already present or empty.
+     */
+    boolean add(String host) {
+        String normalized = normalize(host);
+        if (normalized.isEmpty())
+            return false;
+
+        Node node = root;
+        int labelEnd = normalized.length();
+        for (int i = labelEnd - 1; i >= -1; i--) {
+            if (i == -1 || normalized.charAt(i) == '.') {
+                node = node.getOrCreate(normalized.substring(i + 1, labelEnd));
+                labelEnd = i;
+            }
+        }
+
+        if (node.terminal)
+            return false;
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a host rule. Returns false if it was not present.
+     */
+    boolean remove(String host) {
+        String normalized = normalize(host);
+        if (normalized.isEmpty())
+            return false;
+
+        Node node = find(normalized, 0, normalized.length());
+        if (node == null || !node.terminal)
+            return false;
+        node.terminal = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * Check if the exact host is stored (no suffix matching)
+     */
+    boolean contains(CharSequence host) {
+        Node node = find(host, 0, host.length());
+        return node != null && node.terminal;
+    }
+
+    /**
+     * Find the shortest stored suffix of host[start, end).
+     *
+     * @return start index of the matched suffix inside the sequence, or -1
+     */
+    int matchSuffix(CharSequence host, int start, int end) {
+        Node node = root;
+        int labelEnd = end;
+        for (int i = end - 1; i >= start - 1; i--) {
+            if (i == start - 1 || host.charAt(i) == '.') {
+                node = node.child(host, i + 1, labelEnd);
+                if (node == null)
+                    return -1;
+                if (node.terminal)
+                    return i + 1;
+                labelEnd = i;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private Node find(CharSequence host, int start, int end) {
+        Node node = root;
+        int labelEnd = end;
+        for (int i = end - 1; i >= start - 1; i--) {
+            if (i == start - 1 || host.charAt(i) == '.') {
+                node = node.child(host, i + 1, labelEnd);
+                if (node == null)
+                    return null;
+                labelEnd = i;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Lowercase, trim and strip wildcard/dot decorations ("*.x.com", ".x.com.")
+     */
+    static String normalize(String host) {
+        if (host == null)
+            return "";
+        String h = host.trim().toLowerCase();
+        if (h.startsWith("*."))
+            h = h.substring(2);
+        while (h.startsWith("."))
+            h = h.substring(1);
+        while (h.endsWith("."))
+            h = h.substring(0, h.length() - 1);
+        return h;
+    }
+
+    static char lower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+    }
+
+    /**
+     * Same value as String.hashCode() of the lowercased region
+     */
+    static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + lower(s.charAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Trie node with a small open-addressing table of child labels
+     */
+    private static final class Node {
+        boolean terminal;
+        String[] labels;
+        Node[] children;
+        int count;
+
+        Node child(CharSequence s, int start, int end) {
+            if (labels == null)
+                return null;
+            int mask = labels.length - 1;
+            int slot = mix(hash(s, start, end)) & mask;
+            while (labels[slot] != null) {
+                if (regionEquals(labels[slot], s, start, end)) {
+                    return children[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        Node copy() {
+            Node node = new Node();
+            node.terminal = terminal;
+            node.count = count;
+            if (labels != null) {
+                node.labels = labels.clone();
+                node.children = new Node[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i] != null)
+                        node.children[i] = children[i].copy();
+                }
+            }
+            return node;
+        }
+
+        Node getOrCreate(String label) {
+            Node existing = child(label, 0, label.length());
+            if (existing != null)
+                return existing;
+
+            if (labels == null) {
+                labels = new String[4];
+                children = new Node[4];
+            } else if ((count + 1) * 2 > labels.length) {
+                grow();
+            }
+
+            Node node = new Node();
+            insert(label, node);
+            return node;
+        }
+
+        private void insert(String label, Node node) {
+            int mask = labels.length - 1;
+            int slot = mix(label.hashCode()) & mask;
+            while (labels[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            labels[slot] = label;
+            children[slot] = node;
+            count++;
+        }
+
+        private void grow() {
+            String[] oldLabels = labels;
+            Node[] oldChildren = children;
+            labels = new String[oldLabels.length * 2];
+            children = new Node[oldLabels.length * 2];
+            count = 0;
+            for (int i = 0; i < oldLabels.length; i++) {
+                if (oldLabels[i] != null) {
+                    insert(oldLabels[i], oldChildren[i]);
+                }
+            }
+        }
+
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean regionEquals(String label, CharSequence s, int start, int end) {
+            if (label.length() != end - start)
+                return false;
+            for (int i = 0; i < label.length(); i++) {
+                if (label.charAt(i) != lower(s.charAt(start + i)))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.krillbrowser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EventLog - Structured security event log written off the request path
+ *
+ * Producers (request and UI threads) claim a slot in a fixed-size ring
+ * buffer with one CAS and store the event's fields in place: a timestamp,
+ * the event type, up to two String references and a number. Nothing is
+ * formatted or copied. A daemon thread drains the ring, formats each event
+ * as one line and appends it to ~/.krillbrowser/logs/krill.log, rotating
+ * at 4 MB and keeping krill.1.log .. krill.4.log. After 100 ms without
+ * events it stops polling and sleeps until the next producer unparks it.
+ *
+ * When the ring is full the event is dropped and counted instead of making
+ * the producer wait. Events below the configured level cost one volatile
+ * read; setSampling keeps only 1 in N events of a noisy type.
+ *
+ * Level: krill.log.level (DEBUG, INFO, WARN, ERROR, OFF; default INFO).
+ */
+public final class EventLog {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * Event types, each with the level it is logged at
+     */
+    public enum Event {
+        REQUEST_BLOCKED(Level.INFO),
+        NAVIGATION_BLOCKED(Level.INFO),
+        TRACKING_PARAMS_STRIPPED(Level.DEBUG),
+        PHISHING_DETECTED(Level.WARN),
+        FILTER_LIST_LOADED(Level.INFO),
+        HOSTS_FILE_IMPORTED(Level.INFO);
+
+        final Level level;
+        volatile int sampling = 1; // keep 1 in sampling events
+
+        Event(Level level) {
+            this.level = level;
+        }
+    }
+
+    private static final int CAPACITY = 1 << 13;
+    private static final int MASK = CAPACITY - 1;
+    private static final long MAX_FILE_BYTES = 4L * 1024 * 1024;
+    private static final int KEEP_FILES = 4;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+    private static final int IDLE_PARKS_BEFORE_SLEEP = 50;
+
+    private static final EventLog INSTANCE = new EventLog();
+
+    // Ring slots; a slot is readable once published[slot] == its sequence number
+    private final long[] times = new long[CAPACITY];
+    private final Event[] events = new Event[CAPACITY];
+    private final String[] details = new String[CAPACITY];
+    private final String[] targets = new String[CAPACITY];
+    private final long[] values = new long[CAPACITY];
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+    private final AtomicLong head = new AtomicLong(); // next sequence to claim
+    private volatile long tail; // next sequence to consume
+    private volatile long flushed; // every sequence below this is on disk
+    private final LongAdder dropped = new LongAdder();
+
+    // Millisecond clock ticked by the consumer (at least every park interval),
+    // so producers read a field instead of calling currentTimeMillis
+    private volatile long clock = System.currentTimeMillis();
+
+    private volatile int minLevel;
+    private volatile Thread consumer;
+    // Set while the consumer is parked without a timeout. It re-reads head
+    // after setting this and producers read it after their CAS on head, so
+    // either the consumer sees the new event or the producer wakes it.
+    private volatile boolean sleeping;
+
+    private EventLog() {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+        String level = System.getProperty("krill.log.level", "INFO");
+        try {
+            minLevel = Level.valueOf(level.toUpperCase()).ordinal();
+        } catch (IllegalArgumentException e) {
+            minLevel = Level.INFO.ordinal();
+        }
+    }
+
+    public static void log(Event event, String detail) {
+        INSTANCE.append(event, detail, null, 0);
+    }
+
+    public static void log(Event event, String detail, String target) {
+        INSTANCE.append(event, detail, target, 0);
+    }
+
+    public static void log(Event event, String detail, long value) {
+        INSTANCE.append(event, detail, null, value);
+    }
+
+    /**
+     * Whether an event type would currently be recorded at all
+     */
+    public static boolean isEnabled(Event event) {
+        return event.level.ordinal() >= INSTANCE.minLevel;
+    }
+
+    public static void setLevel(Level level) {
+        INSTANCE.minLevel = level.ordinal();
+    }
+
+    public static Level getLevel() {
+        return Level.values()[INSTANCE.minLevel];
+    }
+
+    /**
+     * Keep only 1 in oneIn events of this type (1 keeps all)
+     */
+    public static void setSampling(Event event, int oneIn) {
+        event.sampling = Math.max(1, oneIn);
+    }
+
+    /**
+     * Events lost because the ring was full
+     */
+    public static long getDroppedCount() {
+        return INSTANCE.dropped.sum();
+    }
+
+    /**
+     * Events logged but not yet written by the consumer
+     */
+    public static long getQueueDepth() {
+        return Math.max(0, INSTANCE.head.get() - INSTANCE.flushed);
+    }
+
+    private void append(Event event, String detail, String target, long value) {
+        if (event.level.ordinal() < minLevel)
+            return;
+        int sampling = event.sampling;
+        if (sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0)
+            return;
+
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        // A sleeping consumer is not ticking the clock
+        boolean wake = sleeping;
+        int slot = (int) sequence & MASK;
+        times[slot] = wake ? System.currentTimeMillis() : clock;
+        events[slot] = event;
+        details[slot] = detail;
+        targets[slot] = target;
+        values[slot] = value;
+        published.lazySet(slot, sequence);
+
+        if (wake) {
+            LockSupport.unpark(consumer);
+        } else if (consumer == null) {
+            startConsumer();
+        }
+    }
+
+    private synchronized void startConsumer() {
+        if (consumer != null)
+            return;
+        Thread thread = new Thread(this::drain, "event-log");
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::awaitFlushed, "event-log-shutdown"));
+    }
+
+    /**
+     * Give the consumer a moment to write out what was logged before exit
+     */
+    private void awaitFlushed() {
+        long target = head.get();
+        long deadline = System.nanoTime() + 500_000_000L;
+        while (flushed < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Consumer loop: format published events in order, flushing when idle and
+     * sleeping once idle for IDLE_PARKS_BEFORE_SLEEP park intervals
+     */
+    private void drain() {
+        Path dir = Paths.get(System.getProperty("user.home"), ".krillbrowser", "logs");
+        Path file = dir.resolve("krill.log");
+        Writer out = null;
+        long written = 0;
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        int idleParks = 0;
+
+        while (true) {
+            clock = System.currentTimeMillis();
+            long sequence = tail;
+            int slot = (int) sequence & MASK;
+            if (published.get(slot) != sequence) {
+                if (out != null) {
+                    try {
+                        out.flush();
+                        flushed = sequence;
+                    } catch (IOException e) {
+                        out = closeQuietly(out);
+                    }
+                }
+                if (++idleParks < IDLE_PARKS_BEFORE_SLEEP) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                // A claimed but unpublished slot shows up in head: keep polling
+                sleeping = true;
+                if (head.get() == sequence)
+                    LockSupport.park(this);
+                clock = System.currentTimeMillis();
+                sleeping = false;
+                idleParks = 0;
+                continue;
+            }
+            idleParks = 0;
+
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(times[slot])).append(' ')
+                    .append(events[slot].level).append(' ')
+                    .append(events[slot]);
+            if (details[slot] != null)
+                line.append(' ').append(details[slot]);
+            if (targets[slot] != null)
+                line.append(' ').append(targets[slot]);
+            if (values[slot] != 0)
+                line.append(' ').append(values[slot]);
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                line.append(" (").append(drops - reportedDrops).append(" events dropped)");
+                reportedDrops = drops;
+            }
+            line.append('\n');
+
+            // Release the slot before the (slow) write
+            details[slot] = null;
+            targets[slot] = null;
+            tail = sequence + 1;
+
+            try {
+                if (out == null || written >= MAX_FILE_BYTES) {
+                    if (out != null) {
+                        out.close();
+                        rotate(dir);
+                    }
+                    Files.createDirectories(dir);
+                    written = Files.exists(file) ? Files.size(file) : 0;
+                    out = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(file.toFile(), true), StandardCharsets.UTF_8));
+                }
+                out.append(line);
+                written += line.length();
+            } catch (IOException e) {
+                System.err.println("Could not write event log: " + e.getMessage());
+                out = closeQuietly(out);
+                LockSupport.parkNanos(IDLE_PARK_NANOS * 500);
+            }
+        }
+    }
+
+    /**
+     * krill.log -> krill.1.log -> ... -> krill.KEEP_FILES.log (deleted)
+     */
+    private static void rotate(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve("krill." + KEEP_FILES + ".log"));
+        for (int i = KEEP_FILES - 1; i >= 1; i--) {
+            Path from = dir.resolve("krill." + i + ".log");
+            if (Files.exists(from)) {
+                Files.move(from, dir.resolve("krill." + (i + 1) + ".log"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(dir.resolve("krill.log"), dir.resolve("krill.1.log"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Writer closeQuietly(Writer out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Already failing; the next event reopens the file
+            }
+        }
+        return null;
+    }
+}
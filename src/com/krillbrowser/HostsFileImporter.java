@@ -0,0 +1,490 @@
+package com.krillbrowser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * HostsFileImporter - Streaming, parallel parser for hosts files and domain lists
+ *
+ * Accepts "0.0.0.0 ads.example.com" hosts-file lines (several hosts per line
+ * allowed) and bare "ads.example.com" domain-list lines, with "#" and "!"
+ * comments. Hosts are lowercased, stripped of "*." and trailing dots,
+ * validated and deduplicated.
+ *
+ * The file is never read as a whole: it is cut into chunks at line breaks,
+ * and each chunk is memory-mapped and parsed straight from its bytes by a
+ * fork-join task into a deduplicated, sorted run. The runs are then merged
+ * straight into a BlocklistSnapshot. Hosts never become Strings: they stay
+ * reversed bytes in flat per-chunk arenas, the snapshot's own key format,
+ * so peak heap is about the size of the distinct host text.
+ */
+final class HostsFileImporter {
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_HOST = 253;
+
+    // Dotted names hosts files map to loopback, stored reversed
+    private static final byte[][] LOCAL_NAMES = {
+            reversed("localhost.localdomain"), reversed("ip6-localhost.localdomain")
+    };
+
+    private HostsFileImporter() {
+    }
+
+    /**
+     * Parse a hosts file or domain list and compile its hosts into a snapshot
+     */
+    static Result compile(Path file, Path snapshotPath, long sourceSize, long sourceModified)
+            throws IOException {
+        long started = System.nanoTime();
+        List<KeySet> runs;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, channel.size());
+            runs = bounds.length <= 2
+                    ? Collections.singletonList(parseRange(channel, bounds[0], bounds[bounds.length - 1]))
+                    : ForkJoinPool.commonPool().invoke(new ParseTask(channel, bounds, 0, bounds.length - 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        int hosts = BlocklistSnapshot.write(snapshotPath, new RunMerger(runs), sourceSize, sourceModified);
+        return new Result(hosts, sourceSize, System.nanoTime() - started);
+    }
+
+    /**
+     * Chunk start offsets (plus the file size), each just after a line break
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = CHUNK_SIZE;
+        while (pos < size) {
+            // Advance to the byte after the next '\n'
+            long boundary = -1;
+            long scan = pos;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0)
+                    break;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (boundary < 0 || boundary >= size)
+                break;
+            bounds.add(boundary);
+            pos = boundary + CHUNK_SIZE;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Splits the chunk list in half until one chunk is left, then parses it
+     */
+    private static final class ParseTask extends RecursiveTask<List<KeySet>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+
+        ParseTask(FileChannel channel, long[] bounds, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<KeySet> compute() {
+            if (to - from == 1) {
+                try {
+                    List<KeySet> run = new ArrayList<>(1);
+                    run.add(parseRange(channel, bounds[from], bounds[to]));
+                    return run;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(channel, bounds, from, mid);
+            left.fork();
+            List<KeySet> right = new ParseTask(channel, bounds, mid, to).compute();
+            List<KeySet> runs = left.join();
+            runs.addAll(right);
+            return runs;
+        }
+    }
+
+    /**
+     * Parse the complete lines in [start, end) of the file
+     */
+    private static KeySet parseRange(FileChannel channel, long start, long end) throws IOException {
+        KeySet hosts = new KeySet();
+        if (end <= start)
+            return hosts;
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] host = new byte[MAX_HOST];
+        int limit = buffer.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+            parseLine(buffer, pos, lineEnd, host, hosts);
+            pos = lineEnd + 1;
+        }
+        hosts.sort();
+        return hosts;
+    }
+
+    /**
+     * Add the hosts named on one line: "[address] host [host ...] [# comment]"
+     */
+    private static void parseLine(MappedByteBuffer line, int pos, int end, byte[] host, KeySet hosts) {
+        boolean first = true;
+        boolean addressLine = false;
+        while (pos < end) {
+            while (pos < end && isSpace(line.get(pos)))
+                pos++;
+            if (pos >= end)
+                return;
+            byte b = line.get(pos);
+            if (b == '#' || (first && b == '!'))
+                return;
+
+            int tokenEnd = pos;
+            while (tokenEnd < end && !isSpace(line.get(tokenEnd)) && line.get(tokenEnd) != '#')
+                tokenEnd++;
+
+            if (first && isAddress(line, pos, tokenEnd)) {
+                addressLine = true;
+            } else {
+                int length = normalize(line, pos, tokenEnd, host);
+                if (length > 0) {
+                    hosts.add(host, length);
+                }
+                if (!addressLine)
+                    return; // Domain lists carry one host per line
+            }
+            first = false;
+            pos = tokenEnd;
+        }
+    }
+
+    /**
+     * Write a host token into key as lowercase reversed bytes.
+     *
+     * @return key length, or 0 if the token is not a dotted host name
+     */
+    private static int normalize(MappedByteBuffer line, int start, int end, byte[] key) {
+        if (end - start >= 2 && line.get(start) == '*' && line.get(start + 1) == '.')
+            start += 2;
+        while (end > start && line.get(end - 1) == '.')
+            end--;
+        while (start < end && line.get(start) == '.')
+            start++;
+
+        int length = end - start;
+        if (length <= 0 || length > MAX_HOST)
+            return 0;
+
+        boolean dotted = false;
+        boolean numeric = true;
+        for (int i = 0; i < length; i++) {
+            byte b = line.get(end - 1 - i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+                numeric = false;
+            } else if (b == '.') {
+                dotted = true;
+            } else if ((b >= 'a' && b <= 'z') || b == '-' || b == '_') {
+                numeric = false;
+            } else if (b < '0' || b > '9') {
+                return 0;
+            }
+            key[i] = b;
+        }
+        // Bare words and IP literals ("0.0.0.0") are not host names
+        if (!dotted || numeric || isLocalName(key, length))
+            return 0;
+        return length;
+    }
+
+    private static boolean isLocalName(byte[] key, int length) {
+        for (byte[] local : LOCAL_NAMES) {
+            if (Arrays.equals(key, 0, length, local, 0, local.length))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a token is an IPv4 or IPv6 address (the hosts-file target)
+     */
+    private static boolean isAddress(MappedByteBuffer line, int start, int end) {
+        boolean colon = false;
+        boolean letter = false;
+        for (int i = start; i < end; i++) {
+            byte b = line.get(i);
+            if (b == ':') {
+                colon = true;
+            } else if ((b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F')) {
+                letter = true;
+            } else if (!((b >= '0' && b <= '9') || b == '.' || b == '%')) {
+                return false;
+            }
+        }
+        return colon || !letter;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static byte[] reversed(String host) {
+        byte[] key = new byte[host.length()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) host.charAt(host.length() - 1 - i);
+        }
+        return key;
+    }
+
+    /**
+     * Deduplicating set of reversed host keys packed into one byte arena
+     * (u8 length + bytes per key), indexed by an open-addressing table.
+     * Once sorted, the table is dropped and the set becomes a sorted run.
+     */
+    static final class KeySet {
+        private byte[] arena = new byte[1 << 16];
+        private int used;
+        private int[] offsets = new int[1 << 12]; // arena offset + 1, 0 = empty
+        private int[] hashes = new int[1 << 12];
+        private int size;
+        private int[] sorted;
+
+        void add(byte[] key, int length) {
+            add(key, 0, length, hash(key, 0, length));
+        }
+
+        private void add(byte[] key, int from, int length, int hash) {
+            int mask = offsets.length - 1;
+            int slot = hash & mask;
+            while (offsets[slot] != 0) {
+                if (hashes[slot] == hash) {
+                    int offset = offsets[slot] - 1;
+                    if ((arena[offset] & 0xFF) == length
+                            && Arrays.equals(arena, offset + 1, offset + 1 + length, key, from, from + length))
+                        return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (used + length + 1 > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, used + length + 1));
+            }
+            arena[used] = (byte) length;
+            System.arraycopy(key, from, arena, used + 1, length);
+            offsets[slot] = used + 1;
+            hashes[slot] = hash;
+            used += length + 1;
+
+            if (++size * 2 > offsets.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            int[] oldOffsets = offsets;
+            int[] oldHashes = hashes;
+            offsets = new int[oldOffsets.length * 2];
+            hashes = new int[oldOffsets.length * 2];
+            int mask = offsets.length - 1;
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (offsets[slot] != 0)
+                        slot = (slot + 1) & mask;
+                    offsets[slot] = oldOffsets[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Order the keys and release the hash table
+         */
+        void sort() {
+            int[] order = new int[size];
+            int n = 0;
+            for (int offset : offsets) {
+                if (offset != 0)
+                    order[n++] = offset - 1;
+            }
+            sort(order, 0, n, 0);
+            sorted = order;
+            offsets = null;
+            hashes = null;
+        }
+
+        /**
+         * Three-way radix quicksort: reversed hosts share long prefixes
+         * ("moc."), which it compares only once per partition
+         */
+        private void sort(int[] a, int lo, int hi, int depth) {
+            while (hi - lo > 12) {
+                int pivot = byteAt(a[(lo + hi) >>> 1], depth);
+                int lt = lo;
+                int gt = hi - 1;
+                int i = lo;
+                while (i <= gt) {
+                    int c = byteAt(a[i], depth);
+                    if (c < pivot) {
+                        swap(a, lt++, i++);
+                    } else if (c > pivot) {
+                        swap(a, i, gt--);
+                    } else {
+                        i++;
+                    }
+                }
+                sort(a, lo, lt, depth);
+                sort(a, gt + 1, hi, depth);
+                if (pivot < 0)
+                    return;
+                lo = lt;
+                hi = gt + 1;
+                depth++;
+            }
+
+            // Insertion sort for short ranges
+            for (int i = lo + 1; i < hi; i++) {
+                for (int j = i; j > lo && compare(a[j], a[j - 1], depth) < 0; j--) {
+                    swap(a, j, j - 1);
+                }
+            }
+        }
+
+        int byteAt(int offset, int depth) {
+            return depth < (arena[offset] & 0xFF) ? arena[offset + 1 + depth] & 0xFF : -1;
+        }
+
+        private int compare(int a, int b, int depth) {
+            while (true) {
+                int x = byteAt(a, depth);
+                int y = byteAt(b, depth);
+                if (x != y || x < 0)
+                    return x - y;
+                depth++;
+            }
+        }
+
+        private static void swap(int[] a, int i, int j) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+
+        private static int hash(byte[] key, int from, int length) {
+            int h = 0x811c9dc5;
+            for (int i = from; i < from + length; i++) {
+                h = (h ^ key[i]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * K-way merge of the sorted runs; keys present in several runs come out
+     * once per run, and the snapshot writer drops the repeats
+     */
+    private static final class RunMerger implements BlocklistSnapshot.KeySource {
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(Cursor::compareTo);
+
+        RunMerger(List<KeySet> runs) {
+            for (KeySet run : runs) {
+                if (run.size() > 0)
+                    queue.add(new Cursor(run));
+            }
+        }
+
+        @Override
+        public int next(byte[] into) {
+            Cursor cursor = queue.poll();
+            if (cursor == null)
+                return -1;
+            KeySet run = cursor.run;
+            int offset = run.sorted[cursor.index];
+            int length = run.arena[offset] & 0xFF;
+            System.arraycopy(run.arena, offset + 1, into, 0, length);
+            if (++cursor.index < run.size()) {
+                queue.add(cursor);
+            }
+            return length;
+        }
+    }
+
+    private static final class Cursor implements Comparable<Cursor> {
+        final KeySet run;
+        int index;
+
+        Cursor(KeySet run) {
+            this.run = run;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int a = run.sorted[index];
+            int b = other.run.sorted[other.index];
+            for (int depth = 0;; depth++) {
+                int x = run.byteAt(a, depth);
+                int y = other.run.byteAt(b, depth);
+                if (x != y || x < 0)
+                    return x - y;
+            }
+        }
+    }
+
+    /**
+     * Import summary: distinct hosts written and throughput
+     */
+    static final class Result {
+        final int hosts;
+        final long bytes;
+        final long nanos;
+
+        Result(int hosts, long bytes, long nanos) {
+            this.hosts = hosts;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        double megabytesPerSecond() {
+            return nanos == 0 ? 0 : (bytes / 1048576.0) / (nanos / 1e9);
+        }
+    }
+}
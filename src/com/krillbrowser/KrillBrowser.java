@@ -24,6 +24,9 @@ public class KrillBrowser extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
 
+        // Expose the managers to jconsole
+        ManagementBeans.register();
+
         // Create the main layout
         BorderPane root = new BorderPane();
 
@@ -100,7 +103,9 @@ public class KrillBrowser extends Application {
         Menu toolsMenu = new Menu("Tools");
         MenuItem cookiesItem = new MenuItem("Manage Cookies");
         cookiesItem.setOnAction(e -> showCookiesDialog());
-        toolsMenu.getItems().add(cookiesItem);
+        MenuItem timingsItem = new MenuItem("Dump Navigation Timings");
+        timingsItem.setOnAction(e -> dumpNavigationTimings());
+        toolsMenu.getItems().addAll(cookiesItem, timingsItem);
 
         // Security Menu - COMPREHENSIVE
         Menu securityMenu = new Menu("🛡️ Security");
@@ -304,6 +309,19 @@ public class KrillBrowser extends Application {
         dialog.showAndWait();
     }
 
+    private void dumpNavigationTimings() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Navigation Timings");
+        try {
+            alert.setHeaderText("Saved to " + NavigationTimings.dump());
+        } catch (java.io.IOException e) {
+            alert.setAlertType(Alert.AlertType.ERROR);
+            alert.setHeaderText("Could not save timings: " + e.getMessage());
+        }
+        alert.setContentText(NavigationTimings.report());
+        alert.showAndWait();
+    }
+
     private void showAboutDialog() {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("About Krill Browser");
@@ -0,0 +1,164 @@
+package com.krillbrowser;
+
+/**
+ * NavigationPolicy - Every check a top-level navigation goes through
+ *
+ * Both front-ends pass what the user typed (or a link target) to evaluate()
+ * and act on the one Decision it returns. The URL is parsed once, and the
+ * same ParsedUrl (and its lowercase host) is shared by every check.
+ *
+ * Checks run cheapest-first and stop at the first one that objects:
+ * 1. HTTPS-only mode (a prefix test)
+ * 2. Profile site rules (cached per host)
+ * 3. Blocklists: SecurityManager hosts, then AdvancedSecurityManager
+ *    host, path and filter rules
+ * 4. Phishing heuristics (pattern matching over the whole URL)
+ */
+public final class NavigationPolicy {
+
+    private static NavigationPolicy instance;
+
+    private final AdvancedSecurityManager advSecurity;
+    private final SecurityManager security;
+    private final BrowserProfile profile;
+    private final PhishingDetector phishing;
+
+    private NavigationPolicy() {
+        advSecurity = AdvancedSecurityManager.getInstance();
+        security = SecurityManager.getInstance();
+        profile = BrowserProfile.getInstance();
+        phishing = PhishingDetector.getInstance();
+    }
+
+    public static synchronized NavigationPolicy getInstance() {
+        if (instance == null) {
+            instance = new NavigationPolicy();
+        }
+        return instance;
+    }
+
+    /**
+     * Resolve the input to a URL and decide whether it may be loaded
+     */
+    public Decision evaluate(String input) {
+        return evaluate(input, SecurityStats.global());
+    }
+
+    /**
+     * Same as evaluate(String), counting upgrades and blocks in a tab's stats
+     */
+    public Decision evaluate(String input, SecurityStats stats) {
+        long start = System.nanoTime();
+        String url = toUrl(input.trim());
+        long now = System.nanoTime();
+        NavigationTimings.record(NavigationTimings.Stage.NORMALIZE, now - start);
+        start = now;
+
+        // HTTPS-only mode check
+        if (advSecurity.isHttpsOnly() && url.startsWith("http://")) {
+            return new Decision(Action.HTTPS_ONLY, url,
+                    "This site uses insecure HTTP. Connection blocked.", 100,
+                    SecurityManager.SecurityLevel.INSECURE);
+        }
+
+        // Upgrade HTTP to HTTPS and clean tracking parameters
+        String upgraded = advSecurity.upgradeToHttps(url);
+        if (upgraded != url) {
+            stats.recordHttpsUpgrade();
+        }
+        now = System.nanoTime();
+        NavigationTimings.record(NavigationTimings.Stage.HTTPS_UPGRADE, now - start);
+        start = now;
+
+        url = advSecurity.cleanUrl(upgraded);
+        ParsedUrl parsed = ParsedUrl.parse(url);
+        now = System.nanoTime();
+        NavigationTimings.record(NavigationTimings.Stage.CLEAN_URL, now - start);
+        start = now;
+
+        // Profile-based site blocking (Gaming blocks social, Work blocks entertainment)
+        boolean profileBlocked = profile.shouldBlockSite(parsed);
+        now = System.nanoTime();
+        NavigationTimings.record(NavigationTimings.Stage.PROFILE_CHECK, now - start);
+        start = now;
+        if (profileBlocked) {
+            return new Decision(Action.PROFILE_BLOCKED, url, profile.getBlockMessage(), 100,
+                    security.getSecurityLevel(url, false));
+        }
+
+        // Trackers and malware
+        boolean blocked = security.isBlockedHost(parsed.host())
+                || advSecurity.shouldBlockRequest(parsed, null, RequestType.DOCUMENT);
+        now = System.nanoTime();
+        NavigationTimings.record(NavigationTimings.Stage.BLOCKLIST_CHECK, now - start);
+        start = now;
+        if (blocked) {
+            stats.recordBlock(parsed.host(), RequestType.DOCUMENT);
+            EventLog.log(EventLog.Event.NAVIGATION_BLOCKED, parsed.host(), url);
+            return new Decision(Action.BLOCKED, url, "This site contains trackers or malware.", 100,
+                    SecurityManager.SecurityLevel.DANGEROUS);
+        }
+
+        // Lookalike domains and scams
+        PhishingDetector.PhishingResult phishingResult = phishing.checkUrl(parsed);
+        NavigationTimings.record(NavigationTimings.Stage.PHISHING_CHECK, System.nanoTime() - start);
+        if (phishingResult.isPhishing) {
+            stats.recordPhishingHit();
+            EventLog.log(EventLog.Event.PHISHING_DETECTED, phishingResult.reason, url);
+            return new Decision(Action.PHISHING, url, phishingResult.reason, phishingResult.confidence,
+                    SecurityManager.SecurityLevel.DANGEROUS);
+        }
+
+        return new Decision(Action.ALLOW, url, null, 0, security.getSecurityLevel(url, false));
+    }
+
+    /**
+     * Add a protocol to bare host names and turn anything else into a search
+     */
+    private static String toUrl(String input) {
+        if (input.startsWith("http://") || input.startsWith("https://"))
+            return input;
+
+        // Check if it looks like a URL or a search query
+        if (input.contains(".") && !input.contains(" ")) {
+            return "https://" + input;
+        }
+        // Use DuckDuckGo for privacy-focused search
+        return "https://duckduckgo.com/?q=" + input.replace(" ", "+");
+    }
+
+    /**
+     * What the front-end should do with a navigation
+     */
+    public enum Action {
+        ALLOW, // Load the URL
+        HTTPS_ONLY, // Plain HTTP refused by HTTPS-only mode
+        PROFILE_BLOCKED, // Blocked by the current profile
+        BLOCKED, // Tracker, ad or malware host
+        PHISHING // Suspected phishing site
+    }
+
+    /**
+     * Result of the navigation checks
+     */
+    public static class Decision {
+        public final Action action;
+        public final String url; // Final URL (protocol added, upgraded, cleaned)
+        public final String reason;
+        public final int confidence; // 0-100
+        public final SecurityManager.SecurityLevel securityLevel;
+
+        Decision(Action action, String url, String reason, int confidence,
+                SecurityManager.SecurityLevel securityLevel) {
+            this.action = action;
+            this.url = url;
+            this.reason = reason;
+            this.confidence = confidence;
+            this.securityLevel = securityLevel;
+        }
+
+        public boolean isAllowed() {
+            return action == Action.ALLOW;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.krillbrowser;
+
+/**
+ * ParsedUrl - A URL split once into offsets
+ *
+ * The URL string is kept as-is and every component (host, registrable
+ * domain, path, query) is an index range into it, so each policy check can
+ * look at the part it needs without re-lowercasing or re-splitting the URL.
+ * The lowercase host is created at most once and shared by every check and
+ * verdict cache.
+ */
+final class ParsedUrl {
+
+    private final String url;
+    private final int schemeEnd; // index of "://", or -1
+    private final int hostStart;
+    private final int hostEnd;
+    private final int siteStart;
+    private final int pathStart;
+    private final int queryStart; // index of '?', or -1
+    private final int fragmentStart; // index of '#', or -1
+    private String host;
+
+    private ParsedUrl(String url) {
+        this.url = url;
+        schemeEnd = url.indexOf("://");
+        hostStart = hostStart(url);
+        hostEnd = hostEnd(url, hostStart);
+        siteStart = siteStart(url, hostStart, hostEnd);
+
+        int path = hostEnd;
+        while (path < url.length() && url.charAt(path) != '/' && url.charAt(path) != '?'
+                && url.charAt(path) != '#')
+            path++;
+        pathStart = path;
+
+        int query = -1;
+        int fragment = -1;
+        for (int i = pathStart; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' && query < 0) {
+                query = i;
+            } else if (c == '#') {
+                fragment = i;
+                break;
+            }
+        }
+        queryStart = query;
+        fragmentStart = fragment;
+    }
+
+    static ParsedUrl parse(String url) {
+        return new ParsedUrl(url);
+    }
+
+    String url() {
+        return url;
+    }
+
+    boolean isHttps() {
+        return url.startsWith("https://");
+    }
+
+    boolean isHttp() {
+        return url.startsWith("http://");
+    }
+
+    boolean hasScheme() {
+        return schemeEnd >= 0;
+    }
+
+    int hostStart() {
+        return hostStart;
+    }
+
+    int hostEnd() {
+        return hostEnd;
+    }
+
+    /**
+     * Start of the registrable domain inside the URL
+     */
+    int siteStart() {
+        return siteStart;
+    }
+
+    int pathStart() {
+        return pathStart;
+    }
+
+    boolean hasQuery() {
+        return queryStart >= 0;
+    }
+
+    int queryStart() {
+        return queryStart;
+    }
+
+    /**
+     * End of the query (or path when there is no query): the fragment, or the end
+     */
+    int queryEnd() {
+        return fragmentStart >= 0 ? fragmentStart : url.length();
+    }
+
+    /**
+     * Lowercase host, without port, userinfo or trailing dot
+     */
+    String host() {
+        if (host == null) {
+            host = url.substring(hostStart, hostEnd).toLowerCase();
+        }
+        return host;
+    }
+
+    /**
+     * Whether the host is an IPv4 or bracketed IPv6 address rather than a name
+     */
+    boolean isIpLiteral() {
+        return isIpv4(url, hostStart, hostEnd) || isIpv6(url, hostStart, hostEnd);
+    }
+
+    /**
+     * Whether this URL and other belong to the same site (registrable domain)
+     */
+    boolean sameSite(ParsedUrl other) {
+        int length = hostEnd - siteStart;
+        return length == other.hostEnd - other.siteStart
+                && url.regionMatches(true, siteStart, other.url, other.siteStart, length);
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * Start of the host inside a URL (after "scheme://" and any "user@")
+     */
+    static int hostStart(String url) {
+        int start = 0;
+        int scheme = url.indexOf("://");
+        if (scheme >= 0) {
+            start = scheme + 3;
+        }
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '@') {
+                start = i + 1;
+            } else if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * End of the host (exclusive), dropping the port and a trailing dot
+     */
+    static int hostEnd(String url, int hostStart) {
+        int end = hostStart;
+        if (end < url.length() && url.charAt(end) == '[') {
+            int close = url.indexOf(']', end);
+            return close > 0 ? close + 1 : url.length();
+        }
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == ':' || c == '/' || c == '?' || c == '#')
+                break;
+            end++;
+        }
+        if (end > hostStart && url.charAt(end - 1) == '.') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Start of the registrable domain by the Public Suffix List ("bbc.co.uk"
+     * in "news.bbc.co.uk"); the whole host for an IP address or a host that
+     * is itself a public suffix
+     */
+    static int siteStart(String host, int start, int end) {
+        if (isIpv4(host, start, end) || isIpv6(host, start, end))
+            return start;
+        int site = PublicSuffixList.getDefault().registrableDomain(host, start, end);
+        return site < 0 ? start : site;
+    }
+
+    /**
+     * Whether s[start, end) is an IPv4 address as browsers read it: one to
+     * four dot-separated numbers, each decimal, octal (leading 0) or hex
+     * (0x), the last one filling the remaining bytes ("127.1", "0x7f000001")
+     */
+    static boolean isIpv4(CharSequence s, int start, int end) {
+        if (start >= end)
+            return false;
+        int parts = 0;
+        int partStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && s.charAt(i) != '.')
+                continue;
+            if (++parts > 4)
+                return false;
+            long value = parseIpv4Part(s, partStart, i);
+            // Every part but the last is one byte; the last fills the rest
+            long limit = i == end ? (1L << (8 * (5 - parts))) - 1 : 255;
+            if (value < 0 || value > limit)
+                return false;
+            partStart = i + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Value of one IPv4 number, or -1 if it is not one
+     */
+    private static long parseIpv4Part(CharSequence s, int start, int end) {
+        if (start >= end)
+            return -1;
+        int radix = 10;
+        if (end - start >= 2 && s.charAt(start) == '0' && (s.charAt(start + 1) | 0x20) == 'x') {
+            radix = 16;
+            start += 2;
+        } else if (end - start >= 2 && s.charAt(start) == '0') {
+            radix = 8;
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), radix);
+            if (digit < 0 || s.charAt(i) > 0x7F)
+                return -1;
+            value = value * radix + digit;
+            if (value > 0xFFFFFFFFL)
+                return -1;
+        }
+        return value;
+    }
+
+    /**
+     * Whether s[start, end) is an IPv6 address, with or without brackets:
+     * up to eight hex groups, at most one "::", optionally ending in a dotted
+     * IPv4 address and followed by a "%zone"
+     */
+    static boolean isIpv6(CharSequence s, int start, int end) {
+        if (end - start >= 2 && s.charAt(start) == '[' && s.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '%') {
+                if (i == end - 1)
+                    return false;
+                end = i;
+                break;
+            }
+        }
+        if (end - start < 2)
+            return false;
+
+        int groups = 0;
+        boolean compressed = false;
+        int i = start;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':')
+                return false;
+            compressed = true;
+            i += 2;
+        }
+        while (i < end) {
+            int groupStart = i;
+            while (i < end && Character.digit(s.charAt(i), 16) >= 0 && s.charAt(i) < 0x80)
+                i++;
+            if (i < end && s.charAt(i) == '.') {
+                // Embedded IPv4 takes the last two groups
+                if (!isDottedQuad(s, groupStart, end))
+                    return false;
+                groups += 2;
+                break;
+            }
+            int digits = i - groupStart;
+            if (digits == 0 || digits > 4)
+                return false;
+            groups++;
+            if (i == end)
+                break;
+            if (s.charAt(i) != ':')
+                return false;
+            i++;
+            if (i < end && s.charAt(i) == ':') {
+                if (compressed)
+                    return false;
+                compressed = true;
+                i++;
+            } else if (i == end) {
+                return false; // Trailing single ':'
+            }
+        }
+        return compressed ? groups < 8 : groups == 8;
+    }
+
+    /**
+     * Strict a.b.c.d with decimal bytes, as used inside IPv6 addresses
+     */
+    private static boolean isDottedQuad(CharSequence s, int start, int end) {
+        int parts = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? s.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || value > 255 || ++parts > 4)
+                    return false;
+                value = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        return parts == 4;
+    }
+}
@@ -0,0 +1,282 @@
+package com.krillbrowser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * PublicSuffixList - Finds the registrable domain (eTLD+1) of a host
+ *
+ * Rules come from the Mozilla Public Suffix List (public_suffix_list.dat):
+ * "co.uk" is a suffix under which anyone can register a name, "*.ck" makes
+ * every name under ck a suffix, "!www.ck" is an exception to that. Both the
+ * ICANN and the private section (github.io, blogspot.com, ...) are used, as
+ * browsers do for cookies and site isolation. The registrable domain is the
+ * matched suffix plus one label: "bbc.co.uk" for news.bbc.co.uk.
+ *
+ * The rules are compiled into a trie of reversed labels kept in flat
+ * arrays, with one open-addressing table mapping (parent node, label) to
+ * the child node. A lookup walks the host's labels right to left straight
+ * from the caller's CharSequence, so it allocates nothing.
+ *
+ * The list is loaded once, from the first of:
+ * - ~/.krillbrowser/public_suffix_list.dat (a newer copy dropped in by hand)
+ * - the copy bundled with the browser
+ * - /usr/share/publicsuffix/public_suffix_list.dat (Linux distributions)
+ * Without any of them only the implicit "*" rule applies: the last label is
+ * the suffix.
+ *
+ * Rules the list spells in Unicode ("公司.cn") are also added in their
+ * "xn--" form, which is how hosts arrive from URLs.
+ */
+final class PublicSuffixList {
+
+    static final String FILE_NAME = "public_suffix_list.dat";
+
+    private static final byte RULE = 1;
+    private static final byte WILDCARD = 2;
+    private static final byte EXCEPTION = 4;
+
+    // Node 0 is the root; every other node is one label below its parent
+    private int[] parent = new int[1024];
+    private int[] labelHash = new int[1024];
+    private int[] labelStart = new int[1024];
+    private int[] labelLength = new int[1024];
+    private byte[] flags = new byte[1024];
+    private char[] labels = new char[8192];
+    private int nodes = 1;
+    private int labelsUsed;
+
+    // (parent, label) -> child node + 1, 0 when empty
+    private int[] table = new int[2048];
+    private int tableMask = table.length - 1;
+
+    private int ruleCount;
+
+    private static final class DefaultHolder {
+        static final PublicSuffixList INSTANCE = loadDefault();
+    }
+
+    private PublicSuffixList() {
+    }
+
+    /**
+     * The list the browser uses, loaded on first use
+     */
+    static PublicSuffixList getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static PublicSuffixList loadDefault() {
+        Path userCopy = Paths.get(System.getProperty("user.home"), ".krillbrowser", FILE_NAME);
+        try {
+            if (Files.isRegularFile(userCopy))
+                return load(userCopy);
+            try (InputStream bundled = PublicSuffixList.class.getResourceAsStream("/" + FILE_NAME)) {
+                if (bundled != null)
+                    return parse(new InputStreamReader(bundled, StandardCharsets.UTF_8));
+            }
+            Path systemCopy = Paths.get("/usr/share/publicsuffix", FILE_NAME);
+            if (Files.isRegularFile(systemCopy))
+                return load(systemCopy);
+        } catch (IOException e) {
+            System.err.println("Could not load public suffix list: " + e.getMessage());
+        }
+        System.err.println("No public suffix list found, using the last label of each host as its suffix");
+        return new PublicSuffixList();
+    }
+
+    /**
+     * Compile a public_suffix_list.dat file
+     */
+    static PublicSuffixList load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    static PublicSuffixList parse(Reader in) throws IOException {
+        PublicSuffixList list = new PublicSuffixList();
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("//"))
+                continue;
+            // A rule is the first word of its line
+            int space = 0;
+            while (space < line.length() && !Character.isWhitespace(line.charAt(space))) {
+                space++;
+            }
+            list.addRule(line.substring(0, space).toLowerCase());
+        }
+        return list;
+    }
+
+    private void addRule(String rule) {
+        byte flag = RULE;
+        if (rule.startsWith("!")) {
+            flag = EXCEPTION;
+            rule = rule.substring(1);
+        } else if (rule.startsWith("*.")) {
+            flag = WILDCARD;
+            rule = rule.substring(2);
+        }
+        if (rule.isEmpty())
+            return;
+
+        insertRule(rule, flag);
+        String ascii = Punycode.toAscii(rule);
+        if (!ascii.equals(rule))
+            insertRule(ascii, flag);
+        ruleCount++;
+    }
+
+    private void insertRule(String rule, byte flag) {
+        int node = 0;
+        int end = rule.length();
+        while (end > 0) {
+            int start = rule.lastIndexOf('.', end - 1) + 1;
+            int child = child(node, rule, start, end);
+            node = child >= 0 ? child : addNode(node, rule, start, end);
+            end = start - 1;
+        }
+        flags[node] |= flag;
+    }
+
+    private int addNode(int parentNode, String rule, int start, int end) {
+        int length = end - start;
+        if (nodes == parent.length) {
+            int capacity = nodes * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            labelHash = Arrays.copyOf(labelHash, capacity);
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelLength = Arrays.copyOf(labelLength, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        if (labelsUsed + length > labels.length)
+            labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsUsed + length));
+
+        int node = nodes++;
+        parent[node] = parentNode;
+        labelHash[node] = DomainTrie.hash(rule, start, end);
+        labelStart[node] = labelsUsed;
+        labelLength[node] = length;
+        rule.getChars(start, end, labels, labelsUsed);
+        labelsUsed += length;
+
+        // Keep the table at most half full
+        if (nodes * 2 > table.length) {
+            table = new int[table.length * 2];
+            tableMask = table.length - 1;
+            for (int n = 1; n < nodes; n++) {
+                insert(n);
+            }
+        } else {
+            insert(node);
+        }
+        return node;
+    }
+
+    private void insert(int node) {
+        int slot = slot(parent[node], labelHash[node]);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & tableMask;
+        }
+        table[slot] = node + 1;
+    }
+
+    private int slot(int parentNode, int hash) {
+        int h = (hash * 31 + parentNode) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+
+    /**
+     * Child of parentNode labelled s[start, end) (ASCII case-insensitive), or -1
+     */
+    private int child(int parentNode, CharSequence s, int start, int end) {
+        int hash = DomainTrie.hash(s, start, end);
+        int length = end - start;
+        for (int slot = slot(parentNode, hash);; slot = (slot + 1) & tableMask) {
+            int node = table[slot] - 1;
+            if (node < 0)
+                return -1;
+            if (parent[node] == parentNode && labelHash[node] == hash && labelLength[node] == length
+                    && labelEquals(node, s, start))
+                return node;
+        }
+    }
+
+    private boolean labelEquals(int node, CharSequence s, int start) {
+        int offset = labelStart[node];
+        for (int i = 0; i < labelLength[node]; i++) {
+            if (labels[offset + i] != DomainTrie.lower(s.charAt(start + i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Start of the public suffix of host[start, end): "co.uk" in
+     * "news.bbc.co.uk". Returns start when the whole host is a suffix,
+     * and -1 for an empty label.
+     */
+    int publicSuffix(CharSequence host, int start, int end) {
+        if (start < end && host.charAt(start) == '.')
+            return -1;
+        int node = 0;
+        int labelEnd = end;
+        // The implicit "*" rule: the last label is always a suffix
+        int suffix = -1;
+        while (labelEnd > start) {
+            int labelStart = labelEnd - 1;
+            while (labelStart >= start && host.charAt(labelStart) != '.') {
+                labelStart--;
+            }
+            labelStart++;
+            if (labelStart == labelEnd)
+                return -1;
+            if (suffix < 0)
+                suffix = labelStart;
+
+            int child = child(node, host, labelStart, labelEnd);
+            // An exception takes precedence: the suffix is the labels after it
+            if (child >= 0 && (flags[child] & EXCEPTION) != 0)
+                return labelEnd + 1;
+            if ((flags[node] & WILDCARD) != 0 || (child >= 0 && (flags[child] & RULE) != 0))
+                suffix = labelStart;
+            if (child < 0)
+                break;
+            node = child;
+            labelEnd = labelStart - 1;
+        }
+        return suffix;
+    }
+
+    /**
+     * Start of the registrable domain (the public suffix plus one label) of
+     * host[start, end), e.g. "bbc.co.uk" in "news.bbc.co.uk"; it ends at
+     * end. Returns -1 when the host is itself a public suffix ("co.uk") or
+     * is malformed.
+     */
+    int registrableDomain(CharSequence host, int start, int end) {
+        int suffix = publicSuffix(host, start, end);
+        if (suffix <= start)
+            return -1;
+        int label = suffix - 2;
+        while (label >= start && host.charAt(label) != '.') {
+            label--;
+        }
+        label++;
+        return label < suffix - 1 ? label : -1;
+    }
+
+    int registrableDomain(CharSequence host) {
+        return registrableDomain(host, 0, host.length());
+    }
+
+    int getRuleCount() {
+        return ruleCount;
+    }
+}
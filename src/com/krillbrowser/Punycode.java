@@ -0,0 +1,261 @@
+package com.krillbrowser;
+
+/**
+ * Punycode - Decodes and encodes the "xn--" labels of internationalized
+ * domain names
+ *
+ * RFC 3492 in both directions. Decoding shows what "xn--pypal-4ve.com"
+ * really spells ("pаypal.com" with a Cyrillic a); encoding turns rules
+ * written in Unicode (the public suffix list has some) into the ASCII form
+ * hosts arrive in. No IDNA mapping or normalization is applied either way;
+ * the label is taken as the registrar stored it.
+ */
+final class Punycode {
+
+    private static final String ACE_PREFIX = "xn--";
+
+    private static final int BASE = 36;
+    private static final int T_MIN = 1;
+    private static final int T_MAX = 26;
+    private static final int SKEW = 38;
+    private static final int DAMP = 700;
+    private static final int INITIAL_BIAS = 72;
+    private static final int INITIAL_N = 0x80;
+
+    private Punycode() {
+    }
+
+    /**
+     * Whether host has at least one "xn--" label
+     */
+    static boolean hasEncodedLabel(CharSequence host) {
+        for (int start = 0; start < host.length(); start++) {
+            if ((start == 0 || host.charAt(start - 1) == '.') && isEncodedLabel(host, start, host.length()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * host with every "xn--" label decoded; labels that are not valid
+     * punycode are kept as they are
+     */
+    static String toUnicode(String host) {
+        if (!hasEncodedLabel(host))
+            return host;
+        StringBuilder out = new StringBuilder(host.length());
+        int start = 0;
+        while (start <= host.length()) {
+            int end = host.indexOf('.', start);
+            if (end < 0)
+                end = host.length();
+            if (start > 0)
+                out.append('.');
+            if (!isEncodedLabel(host, start, end) || !decode(host, start + ACE_PREFIX.length(), end, out))
+                out.append(host, start, end);
+            start = end + 1;
+        }
+        return out.toString();
+    }
+
+    /**
+     * host with every label that is not plain ASCII encoded as "xn--";
+     * labels that cannot be encoded are kept as they are
+     */
+    static String toAscii(String host) {
+        int start = 0;
+        while (start < host.length() && host.charAt(start) < 0x80) {
+            start++;
+        }
+        if (start == host.length())
+            return host;
+        StringBuilder out = new StringBuilder(host.length() + 16);
+        start = 0;
+        while (start <= host.length()) {
+            int end = host.indexOf('.', start);
+            if (end < 0)
+                end = host.length();
+            if (start > 0)
+                out.append('.');
+            int mark = out.length();
+            out.append(ACE_PREFIX);
+            if (isAscii(host, start, end) || !encode(host, start, end, out)) {
+                out.setLength(mark);
+                out.append(host, start, end);
+            }
+            start = end + 1;
+        }
+        return out.toString();
+    }
+
+    private static boolean isAscii(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isEncodedLabel(CharSequence host, int start, int end) {
+        if (end - start <= ACE_PREFIX.length())
+            return false;
+        for (int i = 0; i < ACE_PREFIX.length(); i++) {
+            if (DomainTrie.lower(host.charAt(start + i)) != ACE_PREFIX.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decode the punycode in s[start, end) (without "xn--") and append it to
+     * out. Returns false, leaving out untouched, if the input is malformed.
+     */
+    static boolean decode(CharSequence s, int start, int end, StringBuilder out) {
+        // Every code point comes from at least one input character
+        int[] output = new int[end - start];
+        int length = 0;
+
+        // Basic code points are copied up to the last delimiter
+        int basicEnd = start;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '-')
+                basicEnd = i;
+        }
+        for (int i = start; i < basicEnd; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80)
+                return false;
+            output[length++] = c;
+        }
+
+        int n = INITIAL_N;
+        int bias = INITIAL_BIAS;
+        int i = 0;
+        int in = basicEnd > start ? basicEnd + 1 : start;
+        // An all-ASCII label is never encoded (IDNA), so "xn--abc-" is not valid
+        if (in >= end)
+            return false;
+        while (in < end) {
+            int oldI = i;
+            int w = 1;
+            for (int k = BASE;; k += BASE) {
+                if (in >= end)
+                    return false;
+                int digit = digit(s.charAt(in++));
+                if (digit < 0 || digit > (Integer.MAX_VALUE - i) / w)
+                    return false;
+                i += digit * w;
+                int t = k <= bias ? T_MIN : k >= bias + T_MAX ? T_MAX : k - bias;
+                if (digit < t)
+                    break;
+                if (w > Integer.MAX_VALUE / (BASE - t))
+                    return false;
+                w *= BASE - t;
+            }
+            bias = adapt(i - oldI, length + 1, oldI == 0);
+            if (i / (length + 1) > Integer.MAX_VALUE - n)
+                return false;
+            n += i / (length + 1);
+            i %= length + 1;
+            if (n > Character.MAX_CODE_POINT || (n >= Character.MIN_SURROGATE && n <= Character.MAX_SURROGATE))
+                return false;
+            System.arraycopy(output, i, output, i + 1, length - i);
+            output[i++] = n;
+            length++;
+        }
+
+        for (int c = 0; c < length; c++) {
+            out.appendCodePoint(output[c]);
+        }
+        return true;
+    }
+
+    /**
+     * Encode s[start, end) as punycode (without "xn--") and append it to
+     * out. Returns false, leaving out untouched, if the input is malformed.
+     */
+    static boolean encode(CharSequence s, int start, int end, StringBuilder out) {
+        int[] input = s.subSequence(start, end).codePoints().toArray();
+        int mark = out.length();
+
+        // Basic code points first, then a delimiter if there were any
+        int basic = 0;
+        for (int c : input) {
+            if (c < 0x80) {
+                out.append((char) c);
+                basic++;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                out.setLength(mark);
+                return false; // Unpaired surrogate
+            }
+        }
+        if (basic > 0)
+            out.append('-');
+
+        int n = INITIAL_N;
+        int bias = INITIAL_BIAS;
+        int delta = 0;
+        for (int handled = basic; handled < input.length; n++) {
+            // Next code point to insert: the smallest one not yet handled
+            int m = Integer.MAX_VALUE;
+            for (int c : input) {
+                if (c >= n && c < m)
+                    m = c;
+            }
+            if (m - n > (Integer.MAX_VALUE - delta) / (handled + 1)) {
+                out.setLength(mark);
+                return false;
+            }
+            delta += (m - n) * (handled + 1);
+            n = m;
+
+            for (int c : input) {
+                if (c < n && ++delta == Integer.MAX_VALUE) {
+                    out.setLength(mark);
+                    return false;
+                }
+                if (c != n)
+                    continue;
+                int q = delta;
+                for (int k = BASE;; k += BASE) {
+                    int t = k <= bias ? T_MIN : k >= bias + T_MAX ? T_MAX : k - bias;
+                    if (q < t)
+                        break;
+                    out.append(digitChar(t + (q - t) % (BASE - t)));
+                    q = (q - t) / (BASE - t);
+                }
+                out.append(digitChar(q));
+                bias = adapt(delta, handled + 1, handled == basic);
+                delta = 0;
+                handled++;
+            }
+            delta++;
+        }
+        return true;
+    }
+
+    private static char digitChar(int digit) {
+        return (char) (digit < 26 ? 'a' + digit : '0' + digit - 26);
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0' + 26;
+        if (c >= 'a' && c <= 'z')
+            return c - 'a';
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A';
+        return -1;
+    }
+
+    private static int adapt(int delta, int points, boolean first) {
+        delta = first ? delta / DAMP : delta / 2;
+        delta += delta / points;
+        int k = 0;
+        while (delta > ((BASE - T_MIN) * T_MAX) / 2) {
+            delta /= BASE - T_MIN;
+            k += BASE;
+        }
+        return k + (BASE - T_MIN + 1) * delta / (delta + SKEW);
+    }
+}
@@ -0,0 +1,122 @@
+package com.krillbrowser;
+
+import java.util.Arrays;
+
+/**
+ * QueryParamStripper - Removes tracking parameters from URL query strings
+ *
+ * Rules are parameter names, matched case-insensitively: "fbclid" removes
+ * exactly that parameter, "utm_*" removes every parameter starting with
+ * "utm_". All rules are compiled into one trie, so each parameter name is
+ * checked in a single walk over its characters.
+ *
+ * The query is scanned once in place. A URL without tracking parameters is
+ * returned as the same String instance, without allocating; otherwise the
+ * cleaned URL is built in one pass. Fragments are left untouched.
+ */
+final class QueryParamStripper {
+
+    private static final int FIRST_CHAR = 0x20;
+    private static final int ALPHABET = 0x7F - FIRST_CHAR;
+
+    private static final byte NONE = 0;
+    private static final byte EXACT = 1;
+    private static final byte PREFIX = 2;
+
+    // children[node * ALPHABET + c - FIRST_CHAR] = child node, or 0
+    private final int[] children;
+    private final byte[] kind;
+
+    QueryParamStripper(String... rules) {
+        int[] next = new int[ALPHABET * 16];
+        byte[] kinds = new byte[16];
+        int nodes = 1;
+
+        for (String rule : rules) {
+            boolean prefix = rule.endsWith("*");
+            String name = prefix ? rule.substring(0, rule.length() - 1) : rule;
+            int node = 0;
+            for (int i = 0; i < name.length(); i++) {
+                int c = DomainTrie.lower(name.charAt(i));
+                if (c < FIRST_CHAR || c >= 0x7F)
+                    throw new IllegalArgumentException("Unsupported parameter rule: " + rule);
+                int slot = node * ALPHABET + c - FIRST_CHAR;
+                if (next[slot] == 0) {
+                    if (nodes == kinds.length) {
+                        kinds = Arrays.copyOf(kinds, nodes * 2);
+                        next = Arrays.copyOf(next, nodes * 2 * ALPHABET);
+                    }
+                    next[slot] = nodes++;
+                }
+                node = next[slot];
+            }
+            if (kinds[node] != PREFIX) {
+                kinds[node] = prefix ? PREFIX : EXACT;
+            }
+        }
+        children = Arrays.copyOf(next, nodes * ALPHABET);
+        kind = Arrays.copyOf(kinds, nodes);
+    }
+
+    /**
+     * URL without its tracking parameters; the same instance if there were none
+     */
+    String strip(String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0)
+            return url;
+        int queryEnd = url.indexOf('#');
+        if (queryEnd < 0) {
+            queryEnd = url.length();
+        } else if (queryEnd < queryStart) {
+            return url; // '?' inside the fragment
+        }
+
+        StringBuilder cleaned = null;
+        boolean kept = false;
+        int start = queryStart + 1;
+        while (start <= queryEnd) {
+            int end = url.indexOf('&', start);
+            if (end < 0 || end > queryEnd)
+                end = queryEnd;
+            int nameEnd = url.indexOf('=', start);
+            if (nameEnd < 0 || nameEnd > end)
+                nameEnd = end;
+
+            if (isTracker(url, start, nameEnd)) {
+                if (cleaned == null) {
+                    // Everything before this parameter is kept verbatim
+                    cleaned = new StringBuilder(url.length());
+                    kept = start > queryStart + 1;
+                    cleaned.append(url, 0, kept ? start - 1 : queryStart);
+                }
+            } else if (cleaned != null && end > start) {
+                cleaned.append(kept ? '&' : '?').append(url, start, end);
+                kept = true;
+            }
+            start = end + 1;
+        }
+
+        if (cleaned == null)
+            return url;
+        return cleaned.append(url, queryEnd, url.length()).toString();
+    }
+
+    /**
+     * Whether the parameter name url[start, end) matches a rule
+     */
+    boolean isTracker(CharSequence url, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            if (kind[node] == PREFIX)
+                return true;
+            int c = DomainTrie.lower(url.charAt(i));
+            if (c < FIRST_CHAR || c >= 0x7F)
+                return false;
+            node = children[node * ALPHABET + c - FIRST_CHAR];
+            if (node == 0)
+                return false;
+        }
+        return kind[node] != NONE;
+    }
+}
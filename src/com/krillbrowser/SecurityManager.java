@@ -13,10 +13,15 @@ import java.util.*;
 public class SecurityManager {
 
     private static SecurityManager instance;
-    private Set<String> blockedDomains;
-    private boolean forceHttps = true;
-    private boolean blockPopups = true;
-    private boolean privateMode = false;
+
+    // Blocked domains and their indexes, replaced as a whole on every change
+    // so lookups never lock
+    private volatile BlockList blockList;
+    private final VerdictCache<Boolean> hostVerdicts =
+            new VerdictCache<>("security", VerdictCache.DEFAULT_CAPACITY);
+    private volatile boolean forceHttps = true;
+    private volatile boolean blockPopups = true;
+    private volatile boolean privateMode = false;
 
     // Known malicious/phishing domains (sample list - in production this would be
     // much larger)
@@ -34,8 +39,7 @@ public class SecurityManager {
     };
 
     private SecurityManager() {
-        blockedDomains = new HashSet<>();
-        Collections.addAll(blockedDomains, BLOCKED_DOMAINS);
+        blockList = new BlockList(new HashSet<>(Arrays.asList(BLOCKED_DOMAINS)));
     }
 
     public static synchronized SecurityManager getInstance() {
@@ -52,16 +56,20 @@ public class SecurityManager {
         if (url == null)
             return false;
 
-        String lowerUrl = url.toLowerCase();
+        return isBlockedHost(ParsedUrl.parse(url).host());
+    }
 
-        // Check against blocked domains
-        for (String domain : blockedDomains) {
-            if (lowerUrl.contains(domain)) {
-                return true;
-            }
+    /**
+     * Check a lowercase host (and its parent domains) against blocked domains
+     */
+    boolean isBlockedHost(String host) {
+        Boolean blocked = hostVerdicts.get(host);
+        if (blocked == null) {
+            long generation = VerdictCache.currentGeneration();
+            blocked = blockList.matches(host);
+            hostVerdicts.put(host, blocked, generation);
         }
-
-        return false;
+        return blocked;
     }
 
     /**
@@ -91,7 +99,14 @@ public class SecurityManager {
         if (url == null)
             return SecurityLevel.UNKNOWN;
 
-        if (shouldBlockUrl(url)) {
+        return getSecurityLevel(url, shouldBlockUrl(url));
+    }
+
+    /**
+     * Security level for a URL whose block verdict is already known
+     */
+    SecurityLevel getSecurityLevel(String url, boolean blocked) {
+        if (blocked) {
             return SecurityLevel.DANGEROUS;
         }
 
@@ -110,21 +125,42 @@ public class SecurityManager {
      * Add a domain to the block list
      */
     public void blockDomain(String domain) {
-        blockedDomains.add(domain.toLowerCase());
+        blockDomains(Collections.singletonList(domain));
+    }
+
+    /**
+     * Add several domains to the block list as one change
+     */
+    public synchronized void blockDomains(Collection<String> domains) {
+        Set<String> next = new HashSet<>(blockList.domains);
+        for (String domain : domains) {
+            next.add(domain.toLowerCase());
+        }
+        if (next.size() != blockList.domains.size()) {
+            publish(new BlockList(next));
+        }
     }
 
     /**
      * Remove a domain from the block list
      */
-    public void unblockDomain(String domain) {
-        blockedDomains.remove(domain.toLowerCase());
+    public synchronized void unblockDomain(String domain) {
+        Set<String> next = new HashSet<>(blockList.domains);
+        if (next.remove(domain.toLowerCase())) {
+            publish(new BlockList(next));
+        }
+    }
+
+    private void publish(BlockList next) {
+        blockList = next;
+        VerdictCache.bumpGeneration();
     }
 
     /**
      * Get all blocked domains
      */
     public Set<String> getBlockedDomains() {
-        return new HashSet<>(blockedDomains);
+        return new HashSet<>(blockList.domains);
     }
 
     // Getters and setters for settings
@@ -152,6 +188,30 @@ public class SecurityManager {
         this.privateMode = privateMode;
     }
 
+    /**
+     * Immutable blocked-domain set with its host-suffix trie and Bloom filter
+     */
+    private static final class BlockList {
+        final Set<String> domains;
+        final DomainTrie hosts;
+        final HostBloomFilter bloom;
+
+        BlockList(Set<String> domains) {
+            this.domains = domains;
+            hosts = new DomainTrie();
+            bloom = new HostBloomFilter(domains.size() * 2L);
+            for (String domain : domains) {
+                hosts.add(domain);
+                bloom.add(DomainTrie.normalize(domain));
+            }
+        }
+
+        boolean matches(String host) {
+            return bloom.mightContainSuffixOf(host, 0, host.length())
+                    && hosts.matchSuffix(host, 0, host.length()) >= 0;
+        }
+    }
+
     /**
      * Security levels for URLs
      */
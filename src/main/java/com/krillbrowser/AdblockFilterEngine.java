@@ -0,0 +1,591 @@
+package com.krillbrowser;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * AdblockFilterEngine - Compiles and matches Adblock Plus / EasyList network filters
+ *
+ * Supported syntax:
+ * - "||host^" host anchors, "|" start/end anchors, "*" wildcards, "^" separators
+ * - "@@" exceptions and "$important"
+ * - Options: third-party / first-party, resource types (script, image, ...),
+ *   domain=a.com|~b.com, match-case (compares the URL as written; other
+ *   filters ignore case)
+ * - "/regex/" filters
+ *
+ * Plain "||host^" filters go into a DomainTrie. Every other filter is filed
+ * under the rarest token of its pattern (uBlock's approach), so a URL is only
+ * tested against the few filters that share one of its tokens.
+ * Element-hiding rules ("##") and comments are skipped here.
+ */
+final class AdblockFilterEngine {
+
+    private static final int ALL_TYPES = (1 << RequestType.values().length) - 1;
+
+    private static final int ANCHOR_NONE = 0;
+    private static final int ANCHOR_HOST = 1;
+    private static final int ANCHOR_START = 2;
+
+    private static final int PARTY_ANY = 0;
+    private static final int PARTY_THIRD = 1;
+    private static final int PARTY_FIRST = 2;
+
+    // Tokens too common to narrow anything down
+    private static final Set<String> BAD_TOKENS = new HashSet<>(Arrays.asList(
+            "http", "https", "www", "com", "net", "org", "js", "html", "php", "ad", "ads"));
+
+    private static final int NO_TOKEN = 0;
+
+    private final DomainTrie blockHosts;
+    private final DomainTrie exceptionHosts;
+    private final TokenBuckets blockFilters;
+    private final TokenBuckets exceptionFilters;
+    private final TokenBuckets importantFilters;
+    private int filterCount;
+
+    AdblockFilterEngine() {
+        blockHosts = new DomainTrie();
+        exceptionHosts = new DomainTrie();
+        blockFilters = new TokenBuckets();
+        exceptionFilters = new TokenBuckets();
+        importantFilters = new TokenBuckets();
+    }
+
+    private AdblockFilterEngine(AdblockFilterEngine source) {
+        blockHosts = source.blockHosts.copy();
+        exceptionHosts = source.exceptionHosts.copy();
+        blockFilters = source.blockFilters.copy();
+        exceptionFilters = source.exceptionFilters.copy();
+        importantFilters = source.importantFilters.copy();
+        filterCount = source.filterCount;
+    }
+
+    /**
+     * Independent copy, for copy-on-write rule sets. Compiled filters are
+     * immutable and shared; only the index structures are duplicated.
+     */
+    AdblockFilterEngine copy() {
+        return new AdblockFilterEngine(this);
+    }
+
+    /**
+     * Compile one filter line and add it. Returns false for comments,
+     * cosmetic rules and filters using unsupported options.
+     */
+    boolean addFilter(String line) {
+        if (line == null)
+            return false;
+        String text = line.trim();
+        if (text.isEmpty() || text.startsWith("!") || text.startsWith("[")
+                || text.contains("##") || text.contains("#@#") || text.contains("#?#") || text.contains("#$#"))
+            return false;
+
+        Filter filter = Filter.compile(text);
+        if (filter == null)
+            return false;
+
+        if (filter.isPlainHost()) {
+            DomainTrie hosts = filter.exception ? exceptionHosts : blockHosts;
+            if (!hosts.add(filter.segments[0].substring(0, filter.segments[0].length() - 1)))
+                return false;
+        } else {
+            TokenBuckets buckets = filter.exception ? exceptionFilters
+                    : filter.important ? importantFilters : blockFilters;
+            buckets.add(filter.token, filter);
+        }
+        filterCount++;
+        return true;
+    }
+
+    int size() {
+        return filterCount;
+    }
+
+    /**
+     * Find a blocking filter for the request, honouring exceptions.
+     *
+     * @param hostStart  start of the host inside url
+     * @param hostEnd    end of the host inside url (exclusive)
+     * @param docHost    host of the page making the request, or null
+     * @param thirdParty whether the request crosses sites
+     * @return the matching filter text, or null when the request is allowed
+     */
+    String match(String url, int hostStart, int hostEnd, String docHost, boolean thirdParty, RequestType type) {
+        Filter important = importantFilters.find(url, hostStart, hostEnd, docHost, thirdParty, type);
+        if (important != null)
+            return important.text;
+
+        String blocked = null;
+        int hostMatch = blockHosts.matchSuffix(url, hostStart, hostEnd);
+        if (hostMatch >= 0) {
+            blocked = "||" + url.substring(hostMatch, hostEnd).toLowerCase() + "^";
+        } else {
+            Filter filter = blockFilters.find(url, hostStart, hostEnd, docHost, thirdParty, type);
+            if (filter != null)
+                blocked = filter.text;
+        }
+
+        if (blocked != null && isExcepted(url, hostStart, hostEnd, docHost, thirdParty, type))
+            return null;
+        return blocked;
+    }
+
+    /**
+     * Check if an "@@" exception filter covers the request
+     */
+    boolean isExcepted(String url, int hostStart, int hostEnd, String docHost, boolean thirdParty,
+            RequestType type) {
+        return exceptionHosts.matchSuffix(url, hostStart, hostEnd) >= 0
+                || exceptionFilters.find(url, hostStart, hostEnd, docHost, thirdParty, type) != null;
+    }
+
+    static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '%';
+    }
+
+    /**
+     * ABP "^": anything but a letter, digit or one of _ - . %
+     */
+    static boolean isSeparator(char c) {
+        return !((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-' || c == '.' || c == '%');
+    }
+
+    /**
+     * A single compiled network filter
+     */
+    private static final class Filter {
+        final String text;
+        final boolean exception;
+        boolean important;
+        boolean matchCase;
+        int anchor = ANCHOR_NONE;
+        boolean endAnchor;
+        String[] segments;
+        Pattern regex;
+        int typeMask = ALL_TYPES;
+        int party = PARTY_ANY;
+        String[] includeDomains;
+        String[] excludeDomains;
+        int token = NO_TOKEN;
+
+        private Filter(String text, boolean exception) {
+            this.text = text;
+            this.exception = exception;
+        }
+
+        static Filter compile(String text) {
+            boolean exception = text.startsWith("@@");
+            Filter filter = new Filter(text, exception);
+            String pattern = exception ? text.substring(2) : text;
+
+            // Options follow the last '$', unless it belongs to a regex
+            int dollar = pattern.lastIndexOf('$');
+            if (dollar >= 0 && !(pattern.startsWith("/") && pattern.indexOf('/', 1) > dollar)) {
+                if (!filter.parseOptions(pattern.substring(dollar + 1)))
+                    return null;
+                pattern = pattern.substring(0, dollar);
+            }
+
+            if (pattern.length() > 2 && pattern.startsWith("/") && pattern.endsWith("/")) {
+                try {
+                    filter.regex = Pattern.compile(pattern.substring(1, pattern.length() - 1),
+                            filter.matchCase ? 0 : Pattern.CASE_INSENSITIVE);
+                } catch (PatternSyntaxException e) {
+                    return null;
+                }
+                return filter;
+            }
+
+            if (!filter.matchCase)
+                pattern = pattern.toLowerCase();
+            if (pattern.startsWith("||")) {
+                filter.anchor = ANCHOR_HOST;
+                pattern = pattern.substring(2);
+            } else if (pattern.startsWith("|")) {
+                filter.anchor = ANCHOR_START;
+                pattern = pattern.substring(1);
+            }
+            if (pattern.endsWith("|")) {
+                filter.endAnchor = true;
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+
+            // Leading/trailing wildcards add nothing to an unanchored search
+            while (filter.anchor == ANCHOR_NONE && pattern.startsWith("*"))
+                pattern = pattern.substring(1);
+            while (!filter.endAnchor && pattern.endsWith("*"))
+                pattern = pattern.substring(0, pattern.length() - 1);
+
+            if (pattern.isEmpty())
+                return null;
+
+            List<String> parts = new ArrayList<>();
+            for (String part : pattern.split("\\*", -1)) {
+                if (!part.isEmpty() || parts.isEmpty())
+                    parts.add(part);
+            }
+            filter.segments = parts.toArray(new String[0]);
+            filter.token = pickToken(pattern, filter.anchor, filter.endAnchor);
+            return filter;
+        }
+
+        private boolean parseOptions(String options) {
+            int includeTypes = 0;
+            int excludeTypes = 0;
+            for (String raw : options.split(",")) {
+                String option = raw.trim().toLowerCase();
+                boolean negated = option.startsWith("~");
+                String name = negated ? option.substring(1) : option;
+
+                if (name.startsWith("domain=")) {
+                    List<String> include = new ArrayList<>();
+                    List<String> exclude = new ArrayList<>();
+                    for (String domain : option.substring(7).split("\\|")) {
+                        if (domain.startsWith("~")) {
+                            exclude.add(domain.substring(1));
+                        } else if (!domain.isEmpty()) {
+                            include.add(domain);
+                        }
+                    }
+                    includeDomains = include.isEmpty() ? null : include.toArray(new String[0]);
+                    excludeDomains = exclude.isEmpty() ? null : exclude.toArray(new String[0]);
+                    continue;
+                }
+
+                switch (name) {
+                    case "third-party":
+                    case "3p":
+                        party = negated ? PARTY_FIRST : PARTY_THIRD;
+                        continue;
+                    case "first-party":
+                    case "1p":
+                        party = negated ? PARTY_THIRD : PARTY_FIRST;
+                        continue;
+                    case "important":
+                        important = true;
+                        continue;
+                    case "match-case":
+                        matchCase = !negated;
+                        continue;
+                    default:
+                        break;
+                }
+
+                int bit = typeBit(name);
+                if (bit == 0)
+                    return false; // Unsupported option: drop the filter rather than over-block
+                if (negated) {
+                    excludeTypes |= bit;
+                } else {
+                    includeTypes |= bit;
+                }
+            }
+            typeMask = (includeTypes == 0 ? ALL_TYPES : includeTypes) & ~excludeTypes;
+            return typeMask != 0;
+        }
+
+        private static int typeBit(String name) {
+            switch (name) {
+                case "document":
+                case "doc":
+                    return 1 << RequestType.DOCUMENT.ordinal();
+                case "subdocument":
+                case "frame":
+                    return 1 << RequestType.SUBDOCUMENT.ordinal();
+                case "script":
+                    return 1 << RequestType.SCRIPT.ordinal();
+                case "stylesheet":
+                case "css":
+                    return 1 << RequestType.STYLESHEET.ordinal();
+                case "image":
+                    return 1 << RequestType.IMAGE.ordinal();
+                case "xmlhttprequest":
+                case "xhr":
+                    return 1 << RequestType.XMLHTTPREQUEST.ordinal();
+                case "media":
+                    return 1 << RequestType.MEDIA.ordinal();
+                case "font":
+                    return 1 << RequestType.FONT.ordinal();
+                case "websocket":
+                    return 1 << RequestType.WEBSOCKET.ordinal();
+                case "ping":
+                    return 1 << RequestType.PING.ordinal();
+                case "other":
+                    return 1 << RequestType.OTHER.ordinal();
+                case "all":
+                    return ALL_TYPES;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Pick the longest token that must appear whole in any matching URL
+         */
+        private static int pickToken(String pattern, int anchor, boolean endAnchor) {
+            int bestHash = NO_TOKEN;
+            int bestLength = 0;
+            int i = 0;
+            while (i < pattern.length()) {
+                // match-case patterns keep their capitals; URLs are tokenized lower-case
+                if (!isTokenChar(DomainTrie.lower(pattern.charAt(i)))) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < pattern.length() && isTokenChar(DomainTrie.lower(pattern.charAt(i))))
+                    i++;
+                int end = i;
+
+                boolean leftSafe = start > 0 ? pattern.charAt(start - 1) != '*' : anchor != ANCHOR_NONE;
+                boolean rightSafe = end < pattern.length() ? pattern.charAt(end) != '*' : endAnchor;
+                if (!leftSafe || !rightSafe)
+                    continue;
+
+                String token = pattern.substring(start, end).toLowerCase();
+                if (BAD_TOKENS.contains(token))
+                    continue;
+                if (token.length() > bestLength) {
+                    bestLength = token.length();
+                    bestHash = tokenHash(token, 0, token.length());
+                }
+            }
+            return bestHash;
+        }
+
+        boolean isPlainHost() {
+            if (anchor != ANCHOR_HOST || endAnchor || regex != null || important || matchCase || segments.length != 1
+                    || typeMask != ALL_TYPES || party != PARTY_ANY || includeDomains != null
+                    || excludeDomains != null)
+                return false;
+            String segment = segments[0];
+            if (segment.length() < 2 || segment.charAt(segment.length() - 1) != '^')
+                return false;
+            for (int i = 0; i < segment.length() - 1; i++) {
+                char c = segment.charAt(i);
+                if (!(isTokenChar(c) || c == '.' || c == '-' || c == '_'))
+                    return false;
+            }
+            return true;
+        }
+
+        boolean matches(String url, int hostStart, int hostEnd, String docHost, boolean thirdParty,
+                RequestType type) {
+            if ((typeMask & (1 << type.ordinal())) == 0)
+                return false;
+            if (party == PARTY_THIRD && !thirdParty)
+                return false;
+            if (party == PARTY_FIRST && thirdParty)
+                return false;
+            if (includeDomains != null && (docHost == null || !anyDomainMatches(includeDomains, docHost)))
+                return false;
+            if (excludeDomains != null && docHost != null && anyDomainMatches(excludeDomains, docHost))
+                return false;
+
+            if (regex != null)
+                return regex.matcher(url).find();
+
+            switch (anchor) {
+                case ANCHOR_START:
+                    return matchSegments(url, 0, 0, true);
+                case ANCHOR_HOST:
+                    if (matchSegments(url, 0, hostStart, true))
+                        return true;
+                    for (int i = hostStart; i < hostEnd; i++) {
+                        if (url.charAt(i) == '.' && matchSegments(url, 0, i + 1, true))
+                            return true;
+                    }
+                    return false;
+                default:
+                    return matchSegments(url, 0, 0, false);
+            }
+        }
+
+        /**
+         * Match segments[index..] starting at from; anchored means the segment
+         * must start exactly at from, otherwise it may start anywhere after it
+         */
+        private boolean matchSegments(String url, int index, int from, boolean anchored) {
+            String segment = segments[index];
+            boolean last = index == segments.length - 1;
+            int maxStart = anchored ? from : url.length();
+            for (int start = from; start <= maxStart; start++) {
+                int end = matchAt(url, start, segment, matchCase);
+                if (end < 0)
+                    continue;
+                if (last) {
+                    if (!endAnchor || end == url.length())
+                        return true;
+                    continue;
+                }
+                // Leftmost match is enough for the remaining wildcard segments
+                return matchSegments(url, index + 1, end, false);
+            }
+            return false;
+        }
+
+        private static int matchAt(String url, int start, String segment, boolean matchCase) {
+            int pos = start;
+            for (int i = 0; i < segment.length(); i++) {
+                char p = segment.charAt(i);
+                if (p == '^') {
+                    if (pos == url.length())
+                        continue; // "^" also matches the end of the address
+                    if (!isSeparator(DomainTrie.lower(url.charAt(pos))))
+                        return -1;
+                    pos++;
+                } else {
+                    if (pos == url.length())
+                        return -1;
+                    char c = url.charAt(pos);
+                    if ((matchCase ? c : DomainTrie.lower(c)) != p)
+                        return -1;
+                    pos++;
+                }
+            }
+            return pos;
+        }
+
+        private static boolean anyDomainMatches(String[] domains, String host) {
+            for (String domain : domains) {
+                if (host.equals(domain) || (host.endsWith(domain)
+                        && host.charAt(host.length() - domain.length() - 1) == '.'))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    static int tokenHash(CharSequence s, int start, int end) {
+        int h = DomainTrie.hash(s, start, end);
+        return h == NO_TOKEN ? 1 : h;
+    }
+
+    /**
+     * Filters keyed by token hash in an open-addressing table, plus a list of
+     * filters with no usable token that are checked for every URL
+     */
+    private static final class TokenBuckets {
+        private int[] keys = new int[16];
+        private Filter[][] buckets = new Filter[16][];
+        private int size;
+        private Filter[] untokenized = new Filter[0];
+
+        // One bit per token hash: a cache-resident pre-check that skips the
+        // table probe for the many URL tokens no filter uses
+        private long[] tokenBits = new long[16];
+
+        /**
+         * Bucket arrays are replaced rather than grown in place, so they can
+         * be shared with the copy
+         */
+        TokenBuckets copy() {
+            TokenBuckets copy = new TokenBuckets();
+            copy.keys = keys.clone();
+            copy.buckets = buckets.clone();
+            copy.size = size;
+            copy.untokenized = untokenized;
+            copy.tokenBits = tokenBits.clone();
+            return copy;
+        }
+
+        void add(int token, Filter filter) {
+            if (token == NO_TOKEN) {
+                untokenized = append(untokenized, filter);
+                return;
+            }
+            if ((size + 1) * 2 > keys.length)
+                grow();
+            setTokenBit(tokenBits, token);
+            int slot = slotFor(keys, buckets, token);
+            if (buckets[slot] == null) {
+                keys[slot] = token;
+                buckets[slot] = new Filter[] { filter };
+                size++;
+            } else {
+                buckets[slot] = append(buckets[slot], filter);
+            }
+        }
+
+        Filter find(String url, int hostStart, int hostEnd, String docHost, boolean thirdParty, RequestType type) {
+            for (Filter filter : untokenized) {
+                if (filter.matches(url, hostStart, hostEnd, docHost, thirdParty, type))
+                    return filter;
+            }
+            if (size == 0)
+                return null;
+
+            // Hash each token while scanning, so every character is read once
+            int length = url.length();
+            int hash = 0;
+            boolean inToken = false;
+            for (int i = 0; i <= length; i++) {
+                char c = i < length ? DomainTrie.lower(url.charAt(i)) : ' ';
+                if (isTokenChar(c)) {
+                    hash = 31 * hash + c;
+                    inToken = true;
+                    continue;
+                }
+                if (!inToken)
+                    continue;
+
+                int token = hash == NO_TOKEN ? 1 : hash;
+                hash = 0;
+                inToken = false;
+                if (!hasTokenBit(tokenBits, token))
+                    continue;
+                Filter[] bucket = buckets[slotFor(keys, buckets, token)];
+                if (bucket == null)
+                    continue;
+                for (Filter filter : bucket) {
+                    if (filter.matches(url, hostStart, hostEnd, docHost, thirdParty, type))
+                        return filter;
+                }
+            }
+            return null;
+        }
+
+        private static int slotFor(int[] keys, Filter[][] buckets, int token) {
+            int mask = keys.length - 1;
+            int slot = (token ^ (token >>> 16)) & mask;
+            while (buckets[slot] != null && keys[slot] != token)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Filter[][] oldBuckets = buckets;
+            keys = new int[oldKeys.length * 2];
+            buckets = new Filter[oldKeys.length * 2][];
+            // Four bits per slot keeps the bitmap around an eighth of the table
+            tokenBits = new long[Math.max(16, keys.length / 16)];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldBuckets[i] != null) {
+                    int slot = slotFor(keys, buckets, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    buckets[slot] = oldBuckets[i];
+                    setTokenBit(tokenBits, oldKeys[i]);
+                }
+            }
+        }
+
+        private static void setTokenBit(long[] bits, int token) {
+            int bit = (token * 0x9E3779B9) >>> 8;
+            bits[(bit >>> 6) & (bits.length - 1)] |= 1L << bit;
+        }
+
+        private static boolean hasTokenBit(long[] bits, int token) {
+            int bit = (token * 0x9E3779B9) >>> 8;
+            return (bits[(bit >>> 6) & (bits.length - 1)] & (1L << bit)) != 0;
+        }
+
+        private static Filter[] append(Filter[] array, Filter filter) {
+            Filter[] grown = Arrays.copyOf(array, array.length + 1);
+            grown[array.length] = filter;
+            return grown;
+        }
+    }
+}
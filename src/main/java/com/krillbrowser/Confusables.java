@@ -0,0 +1,102 @@
+package com.krillbrowser;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Confusables - Maps host labels to a "skeleton" for homoglyph detection
+ *
+ * Two strings that look alike get the same skeleton, in the spirit of the
+ * Unicode TR39 confusable detection: "pаypal" (Cyrillic a), "paypa1" and
+ * "paypal" all become "paypal". Accents are dropped first (NFD, then the
+ * combining marks), then every character is replaced by its prototype from
+ * the table below.
+ *
+ * The table is a lowercase subset of TR39's confusables.txt: the Cyrillic,
+ * Greek, Armenian and Latin letters that pass for ASCII ones in a host
+ * name, fullwidth forms, "m" -> "rn" and "d" -> "cl". On top of TR39 it
+ * keeps the old ASCII substitutions (4 -> a, 3 -> e, 5 -> s, ...) and folds
+ * "i" and "l" together, as the previous lookalike list did.
+ */
+final class Confusables {
+
+    private static final String[][] TABLE = {
+            // ASCII digits and symbols
+            { "0", "o" }, { "1", "l" }, { "|", "l" }, { "!", "l" }, { "i", "l" },
+            { "3", "e" }, { "4", "a" }, { "@", "a" }, { "5", "s" }, { "$", "s" },
+            { "m", "rn" }, { "d", "cl" }, { "€", "e" },
+            // Latin
+            { "ɑ", "a" }, { "ɡ", "g" }, { "ı", "l" }, { "ɩ", "l" }, { "ǀ", "l" },
+            { "ℓ", "l" }, { "ᴢ", "z" },
+            // Cyrillic
+            { "а", "a" }, { "с", "c" }, { "ԁ", "cl" }, { "е", "e" }, { "һ", "h" },
+            { "і", "l" }, { "ӏ", "l" }, { "ј", "j" }, { "о", "o" }, { "р", "p" },
+            { "ԛ", "q" }, { "ѕ", "s" }, { "ѵ", "v" }, { "ԝ", "w" }, { "х", "x" },
+            { "у", "y" }, { "ү", "y" },
+            // Greek
+            { "α", "a" }, { "ϲ", "c" }, { "ι", "l" }, { "κ", "k" }, { "ο", "o" },
+            { "ρ", "p" }, { "υ", "u" }, { "ν", "v" }, { "γ", "y" },
+            // Armenian
+            { "ց", "g" }, { "ո", "n" }, { "օ", "o" }, { "ս", "u" }
+    };
+
+    // Sorted sources and their prototypes, for a binary search per character
+    private static final char[] SOURCES = new char[TABLE.length];
+    private static final String[] PROTOTYPES = new String[TABLE.length];
+    static {
+        String[][] sorted = TABLE.clone();
+        Arrays.sort(sorted, Comparator.comparing(entry -> entry[0]));
+        for (int i = 0; i < sorted.length; i++) {
+            SOURCES[i] = sorted[i][0].charAt(0);
+            PROTOTYPES[i] = sorted[i][1];
+        }
+    }
+
+    private Confusables() {
+    }
+
+    /**
+     * Skeleton of text[start, end); text is expected to be lowercase
+     */
+    static String skeleton(CharSequence text, int start, int end) {
+        CharSequence source = text;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 0x80) {
+                source = stripMarks(text.subSequence(start, end));
+                start = 0;
+                end = source.length();
+                break;
+            }
+        }
+
+        StringBuilder skeleton = new StringBuilder(end - start + 4);
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            // Fullwidth ASCII variants, e.g. U+FF41 for 'a'
+            if (c >= '！' && c <= '～')
+                c = Character.toLowerCase((char) (c - 0xFEE0));
+            int index = Arrays.binarySearch(SOURCES, c);
+            if (index >= 0) {
+                skeleton.append(PROTOTYPES[index]);
+            } else {
+                skeleton.append(c);
+            }
+        }
+        return skeleton.toString();
+    }
+
+    static String skeleton(CharSequence text) {
+        return skeleton(text, 0, text.length());
+    }
+
+    private static String stripMarks(CharSequence text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK)
+                stripped.append(c);
+        }
+        return stripped.toString();
+    }
+}
@@ -0,0 +1,310 @@
+package com.krillbrowser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CosmeticFilterEngine - Element-hiding rules ("##") compiled into stylesheets
+ *
+ * Supported syntax:
+ * - "##.ad-banner" generic rules, applied on every site
+ * - "example.com,example.org##.promo" rules for a site and its subdomains
+ * - "~example.com##.ad" generic rules with exempt sites
+ * - "#@#.ad" / "example.com#@#.ad" exceptions
+ *
+ * Selectors are indexed by host. Sites without rules of their own share the
+ * generic stylesheet instance; a site with extra selectors gets a small
+ * stylesheet holding just those, layered on the shared generic one. Only
+ * sites exempt from generic rules get a full sheet of their own, since CSS
+ * cannot take a rule back. The stylesheet is meant to be applied
+ * before the page is parsed (a user stylesheet, or a style element injected
+ * at load start) so ads are never laid out or painted.
+ * Procedural rules ("#?#", "#$#") are not supported and are skipped.
+ */
+final class CosmeticFilterEngine {
+
+    private static final String HIDE = "{display:none!important}\n";
+
+    private final Set<String> generic;
+    private final Set<String> genericExceptions;
+    private final Map<String, Set<String>> hostSelectors;
+    private final Map<String, Set<String>> hostExceptions;
+    private int filterCount;
+
+    // Built lazily; every mutation resets it
+    private Style genericStyle;
+
+    CosmeticFilterEngine() {
+        generic = new LinkedHashSet<>();
+        genericExceptions = new HashSet<>();
+        hostSelectors = new HashMap<>();
+        hostExceptions = new HashMap<>();
+    }
+
+    private CosmeticFilterEngine(CosmeticFilterEngine other) {
+        generic = new LinkedHashSet<>(other.generic);
+        genericExceptions = new HashSet<>(other.genericExceptions);
+        hostSelectors = copyIndex(other.hostSelectors);
+        hostExceptions = copyIndex(other.hostExceptions);
+        filterCount = other.filterCount;
+        genericStyle = other.genericStyle;
+    }
+
+    /**
+     * Independent copy for building the next rule set
+     */
+    CosmeticFilterEngine copy() {
+        return new CosmeticFilterEngine(this);
+    }
+
+    /**
+     * Compile one filter list line, returning whether it was an element-hiding rule
+     */
+    boolean addFilter(String line) {
+        if (line == null)
+            return false;
+        String text = line.trim();
+
+        boolean exception = false;
+        int separator = text.indexOf("##");
+        int selectorStart = separator + 2;
+        if (separator < 0) {
+            separator = text.indexOf("#@#");
+            selectorStart = separator + 3;
+            exception = true;
+        }
+        if (separator < 0 || text.startsWith("!"))
+            return false;
+
+        String selector = text.substring(selectorStart).trim();
+        if (!isSafeSelector(selector))
+            return false;
+
+        List<String> included = new ArrayList<>();
+        List<String> excluded = new ArrayList<>();
+        for (String domain : text.substring(0, separator).split(",")) {
+            String host = domain.trim().toLowerCase();
+            if (host.startsWith("~")) {
+                if (host.length() > 1)
+                    excluded.add(host.substring(1));
+            } else if (!host.isEmpty()) {
+                included.add(host);
+            }
+        }
+
+        if (exception) {
+            if (included.isEmpty()) {
+                genericExceptions.add(selector);
+            } else {
+                for (String host : included) {
+                    hostExceptions.computeIfAbsent(host, h -> new LinkedHashSet<>()).add(selector);
+                }
+            }
+        } else if (included.isEmpty()) {
+            // Generic rule; "~site" domains become exceptions for that site
+            generic.add(selector);
+            for (String host : excluded) {
+                hostExceptions.computeIfAbsent(host, h -> new LinkedHashSet<>()).add(selector);
+            }
+        } else {
+            for (String host : included) {
+                hostSelectors.computeIfAbsent(host, h -> new LinkedHashSet<>()).add(selector);
+            }
+        }
+        genericStyle = null;
+        filterCount++;
+        return true;
+    }
+
+    int size() {
+        return filterCount;
+    }
+
+    /**
+     * Stylesheet for a lowercase host: the generic rules plus those for the
+     * host and its parent domains, minus exceptions
+     */
+    Style styleFor(String host) {
+        Set<String> specific = null;
+        Set<String> exempt = null;
+        for (int start = 0; start >= 0; start = nextLabel(host, start)) {
+            String domain = start == 0 ? host : host.substring(start);
+            Set<String> selectors = hostSelectors.get(domain);
+            if (selectors != null) {
+                if (specific == null)
+                    specific = new LinkedHashSet<>();
+                specific.addAll(selectors);
+            }
+            Set<String> exceptions = hostExceptions.get(domain);
+            if (exceptions != null) {
+                if (exempt == null)
+                    exempt = new HashSet<>();
+                exempt.addAll(exceptions);
+            }
+        }
+
+        Style shared = genericStyle();
+        if (specific == null && exempt == null)
+            return shared;
+
+        StringBuilder css = new StringBuilder();
+        if (exempt != null)
+            appendRules(css, generic, exempt);
+        if (specific != null)
+            appendRules(css, specific, exempt);
+        if (exempt != null)
+            return new Style(null, css.toString(), true);
+        return new Style(shared.isEmpty() ? null : shared, css.toString(), false);
+    }
+
+    private Style genericStyle() {
+        Style style = genericStyle;
+        if (style == null) {
+            StringBuilder css = new StringBuilder();
+            appendRules(css, generic, null);
+            // A whole number of base64 groups, so a site's sheet can be appended
+            // to the encoded generic one without re-encoding it
+            int bytes = css.toString().getBytes(StandardCharsets.UTF_8).length;
+            for (int pad = (3 - bytes % 3) % 3; pad > 0; pad--) {
+                css.append('\n');
+            }
+            style = new Style(null, css.toString(), false);
+            genericStyle = style;
+        }
+        return style;
+    }
+
+    /**
+     * One rule per selector: a browser drops a whole rule when any selector
+     * in its list is invalid, so grouping would let one bad filter unhide others
+     */
+    private void appendRules(StringBuilder css, Set<String> selectors, Set<String> exempt) {
+        for (String selector : selectors) {
+            if (genericExceptions.contains(selector) || (exempt != null && exempt.contains(selector)))
+                continue;
+            css.append(selector).append(HIDE);
+        }
+    }
+
+    private static int nextLabel(String host, int start) {
+        int dot = host.indexOf('.', start);
+        return dot < 0 ? -1 : dot + 1;
+    }
+
+    /**
+     * Selectors that cannot break out of their rule or pull in resources
+     */
+    private static boolean isSafeSelector(String selector) {
+        if (selector.isEmpty() || selector.startsWith("+js") || selector.startsWith("^"))
+            return false;
+        for (int i = 0; i < selector.length(); i++) {
+            char c = selector.charAt(i);
+            if (c == '{' || c == '}' || c == ';' || c == '\\' || c == '\n' || c == '\r')
+                return false;
+        }
+        return !selector.contains(":-abp-") && !selector.contains(":has-text(")
+                && !selector.contains("url(") && !selector.contains("/*");
+    }
+
+    private static Map<String, Set<String>> copyIndex(Map<String, Set<String>> index) {
+        Map<String, Set<String>> copy = new HashMap<>(index.size() * 2);
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            copy.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * A compiled stylesheet, with the forms each engine injects it in.
+     * A site's sheet may be layered on the shared generic one (base); its
+     * own rules then hold only the site's extra selectors.
+     */
+    static final class Style {
+        private static final String DATA_URL_PREFIX = "data:text/css;charset=utf-8;base64,";
+
+        private final Style base;
+        private final String css;
+        private final boolean copiesGenericRules;
+        private String dataUrl;
+        private String injectionScript;
+
+        Style(Style base, String css, boolean copiesGenericRules) {
+            this.base = base;
+            this.css = css;
+            this.copiesGenericRules = copiesGenericRules;
+        }
+
+        boolean isEmpty() {
+            return css.isEmpty() && (base == null || base.isEmpty());
+        }
+
+        /**
+         * Whether this sheet repeats the generic rules instead of sharing them
+         * (a site exempt from some of them), which makes it as large as the
+         * generic sheet
+         */
+        boolean copiesGenericRules() {
+            return copiesGenericRules;
+        }
+
+        String css() {
+            return base != null ? base.css + css : css;
+        }
+
+        /**
+         * data: URL for WebEngine.setUserStyleSheetLocation (base64 is required).
+         * A layered sheet is joined to its base's encoding on each call
+         * rather than kept.
+         */
+        String dataUrl() {
+            if (base != null)
+                return base.dataUrl() + encode(css);
+            if (dataUrl == null)
+                dataUrl = DATA_URL_PREFIX + encode(css);
+            return dataUrl;
+        }
+
+        private static String encode(String css) {
+            return Base64.getEncoder().encodeToString(css.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Scripts that add the stylesheet to a document that may not have a
+         * head yet (run at load start): the base sheet's, then this one's
+         */
+        List<String> injectionScripts() {
+            if (base == null)
+                return List.of(injectionScript());
+            return List.of(base.injectionScript(), injectionScript());
+        }
+
+        private String injectionScript() {
+            if (injectionScript == null) {
+                StringBuilder js = new StringBuilder(css.length() + 200);
+                js.append("(function(){var s=document.createElement('style');s.textContent='");
+                for (int i = 0; i < css.length(); i++) {
+                    char c = css.charAt(i);
+                    switch (c) {
+                        case '\'':
+                            js.append("\\'");
+                            break;
+                        case '\\':
+                            js.append("\\\\");
+                            break;
+                        case '\n':
+                            js.append("\\n");
+                            break;
+                        case '<':
+                            js.append("\\x3c");
+                            break;
+                        default:
+                            js.append(c);
+                    }
+                }
+                js.append("';(document.head||document.documentElement).appendChild(s);})();");
+                injectionScript = js.toString();
+            }
+            return injectionScript;
+        }
+    }
+}
@@ -14,6 +14,7 @@ public class HistoryManager {
     private static HistoryManager instance;
     private List<HistoryEntry> history;
     private Path historyFile;
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
     private static final int MAX_HISTORY_SIZE = 1000;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -41,7 +42,7 @@ public class HistoryManager {
         return dataDir;
     }
 
-    public void addToHistory(String url) {
+    public synchronized void addToHistory(String url) {
         if (url == null || url.isEmpty())
             return;
 
@@ -61,7 +62,7 @@ public class HistoryManager {
         saveHistory();
     }
 
-    public List<String> getHistory() {
+    public synchronized List<String> getHistory() {
         List<String> formattedHistory = new ArrayList<>();
         for (HistoryEntry entry : history) {
             formattedHistory.add(entry.timestamp.format(FORMATTER) + " - " + entry.url);
@@ -69,11 +70,29 @@ public class HistoryManager {
         return formattedHistory;
     }
 
-    public void clearHistory() {
+    public synchronized void clearHistory() {
         history.clear();
         saveHistory();
     }
 
+    public synchronized int getHistorySize() {
+        return history.size();
+    }
+
+    /**
+     * Write history.txt now
+     */
+    public synchronized void flush() {
+        saveHistory();
+    }
+
+    /**
+     * How long writing history.txt has taken (every visit rewrites it)
+     */
+    public LatencyHistogram.Snapshot getFlushLatency() {
+        return flushLatency.snapshot();
+    }
+
     private void loadHistory() {
         try {
             if (Files.exists(historyFile)) {
@@ -98,6 +117,7 @@ public class HistoryManager {
     }
 
     private void saveHistory() {
+        long started = System.nanoTime();
         try {
             List<String> lines = new ArrayList<>();
             for (HistoryEntry entry : history) {
@@ -107,6 +127,7 @@ public class HistoryManager {
         } catch (IOException e) {
             System.err.println("Failed to save history: " + e.getMessage());
         }
+        flushLatency.record(System.nanoTime() - started);
     }
 
     private static class HistoryEntry {
@@ -0,0 +1,178 @@
+package com.krillbrowser;
+
+/**
+ * HostBloomFilter - Probabilistic pre-filter over blocked host suffixes
+ *
+ * Answers "definitely not blocked" for a URL's host after a few hashes, so
+ * the exact trie/snapshot lookup only runs for the rare hosts that might
+ * be listed. False positives only cost an exact lookup; there are no false
+ * negatives.
+ *
+ * Hosts are hashed in reverse ("moc.elpmaxe"), so one right-to-left walk
+ * over a URL's host yields the hash of every label-aligned suffix in turn.
+ *
+ * Tunables (system properties or configure()):
+ * - krill.bloom.fpp: target false-positive rate (default 0.01)
+ * - krill.bloom.maxBytes: memory cap per filter (default 8 MB)
+ */
+final class HostBloomFilter {
+
+    private static volatile double targetFpp = Double.parseDouble(System.getProperty("krill.bloom.fpp", "0.01"));
+    private static volatile int maxBytes = Integer.getInteger("krill.bloom.maxBytes", 8 * 1024 * 1024);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private long insertions;
+
+    /**
+     * Size a filter for the expected number of hosts using the current tunables
+     */
+    HostBloomFilter(long expectedInsertions) {
+        long n = Math.max(expectedInsertions, 64);
+        double p = targetFpp;
+        long optimalBits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        long cappedBits = Math.min(optimalBits, (long) maxBytes * 8);
+        int words = (int) Math.max(1, (cappedBits + 63) / 64);
+
+        bits = new long[words];
+        bitCount = (long) words * 64;
+        hashCount = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / n * Math.log(2))));
+        capacity = n;
+    }
+
+    private HostBloomFilter(HostBloomFilter source) {
+        bits = source.bits.clone();
+        bitCount = source.bitCount;
+        hashCount = source.hashCount;
+        capacity = source.capacity;
+        insertions = source.insertions;
+    }
+
+    /**
+     * Independent copy, for copy-on-write rule sets
+     */
+    HostBloomFilter copy() {
+        return new HostBloomFilter(this);
+    }
+
+    /**
+     * Set the tunables used by filters built from now on
+     */
+    static void configure(double falsePositiveRate, int maxSizeBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        if (maxSizeBytes < 8)
+            throw new IllegalArgumentException("Bloom filter needs at least 8 bytes");
+        targetFpp = falsePositiveRate;
+        maxBytes = maxSizeBytes;
+    }
+
+    static double getTargetFalsePositiveRate() {
+        return targetFpp;
+    }
+
+    static int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Add a normalized (lowercase) host
+     */
+    void add(CharSequence host) {
+        long h = FNV_OFFSET;
+        for (int i = host.length() - 1; i >= 0; i--) {
+            h = step(h, DomainTrie.lower(host.charAt(i)));
+        }
+        set(h);
+    }
+
+    /**
+     * Add a host given as reversed ASCII bytes (the snapshot's key format)
+     */
+    void addReversed(byte[] key, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h = step(h, (char) (key[i] & 0xFF));
+        }
+        set(h);
+    }
+
+    /**
+     * Whether any label-aligned suffix of host[start, end) might have been added
+     */
+    boolean mightContainSuffixOf(CharSequence host, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = end - 1; i >= start; i--) {
+            h = step(h, DomainTrie.lower(host.charAt(i)));
+            if ((i == start || host.charAt(i - 1) == '.') && test(h))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * True once more hosts were added than the filter was sized for
+     */
+    boolean isOverCapacity() {
+        return insertions > capacity;
+    }
+
+    int sizeInBytes() {
+        return bits.length * 8;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * False-positive rate expected for the hosts added so far
+     */
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    private static long step(long h, char c) {
+        return (h ^ c) * FNV_PRIME;
+    }
+
+    private void set(long hash) {
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+        insertions++;
+    }
+
+    private boolean test(long hash) {
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * MurmurHash3 finalizer: spreads FNV's weak high bits
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
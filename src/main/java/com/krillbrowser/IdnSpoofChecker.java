@@ -0,0 +1,134 @@
+package com.krillbrowser;
+
+import java.lang.Character.UnicodeScript;
+import java.util.*;
+
+/**
+ * IdnSpoofChecker - Flags internationalized host names built to pass for others
+ *
+ * The host's "xn--" labels are decoded (see Punycode) and each label's
+ * letters are classified by Unicode script; digits, hyphens and combining
+ * marks belong to every script. A label is suspicious when it:
+ * - mixes scripts, e.g. Latin with Cyrillic or Greek. Latin may only be
+ *   combined with Han and the scripts written alongside it (Hiragana and
+ *   Katakana, Bopomofo, or Hangul);
+ * - is written entirely in Cyrillic, Greek or Armenian letters that all
+ *   look like Latin ones ("аррӏе"), unless the TLD belongs to a country
+ *   that uses that script.
+ *
+ * This follows the "highly restrictive" level of Unicode TR39 and the
+ * rules browsers apply before showing a Unicode host in the address bar.
+ */
+final class IdnSpoofChecker {
+
+    private static final Result PLAIN = new Result(null, null);
+
+    private static final List<EnumSet<UnicodeScript>> ALLOWED_MIXES = List.of(
+            EnumSet.of(UnicodeScript.LATIN, UnicodeScript.HAN, UnicodeScript.HIRAGANA, UnicodeScript.KATAKANA),
+            EnumSet.of(UnicodeScript.LATIN, UnicodeScript.HAN, UnicodeScript.BOPOMOFO),
+            EnumSet.of(UnicodeScript.LATIN, UnicodeScript.HAN, UnicodeScript.HANGUL));
+
+    // Country TLDs where an all-Cyrillic (Greek, Armenian) name is expected
+    private static final Map<UnicodeScript, Set<String>> SCRIPT_TLDS = new EnumMap<>(UnicodeScript.class);
+    static {
+        SCRIPT_TLDS.put(UnicodeScript.CYRILLIC, Set.of("ru", "su", "by", "ua", "kz", "kg", "tj", "bg", "rs", "mk",
+                "mn", "me", "ba", "рф", "бел", "укр", "қаз", "срб", "мкд", "бг", "мон"));
+        SCRIPT_TLDS.put(UnicodeScript.GREEK, Set.of("gr", "cy", "ελ"));
+        SCRIPT_TLDS.put(UnicodeScript.ARMENIAN, Set.of("am", "հայ"));
+    }
+
+    private IdnSpoofChecker() {
+    }
+
+    /**
+     * Analyze a lowercase host; plain ASCII hosts return at once
+     */
+    static Result check(String host) {
+        boolean ascii = true;
+        for (int i = 0; i < host.length() && ascii; i++) {
+            ascii = host.charAt(i) < 0x80;
+        }
+        if (ascii && !Punycode.hasEncodedLabel(host))
+            return PLAIN;
+
+        String unicodeHost = Punycode.toUnicode(host);
+        int lastDot = unicodeHost.lastIndexOf('.');
+        String tld = unicodeHost.substring(lastDot + 1);
+
+        int start = 0;
+        while (start < unicodeHost.length()) {
+            int end = unicodeHost.indexOf('.', start);
+            if (end < 0)
+                end = unicodeHost.length();
+            String reason = checkLabel(unicodeHost, start, end, tld);
+            if (reason != null)
+                return new Result(unicodeHost, reason);
+            start = end + 1;
+        }
+        return new Result(unicodeHost, null);
+    }
+
+    private static String checkLabel(String host, int start, int end, String tld) {
+        EnumSet<UnicodeScript> scripts = EnumSet.noneOf(UnicodeScript.class);
+        for (int i = start; i < end; i += Character.charCount(host.codePointAt(i))) {
+            UnicodeScript script = UnicodeScript.of(host.codePointAt(i));
+            if (script != UnicodeScript.COMMON && script != UnicodeScript.INHERITED)
+                scripts.add(script);
+        }
+
+        if (scripts.size() > 1) {
+            for (EnumSet<UnicodeScript> allowed : ALLOWED_MIXES) {
+                if (allowed.containsAll(scripts))
+                    return null;
+            }
+            return "Mixed scripts in domain name (" + describe(scripts) + ")";
+        }
+
+        if (scripts.size() == 1) {
+            UnicodeScript script = scripts.iterator().next();
+            if (SCRIPT_TLDS.containsKey(script) && !SCRIPT_TLDS.get(script).contains(tld)
+                    && looksLatin(host, start, end)) {
+                return "Domain name written in " + describe(scripts) + " letters that look Latin";
+            }
+        }
+        return null;
+    }
+
+    // Whether every letter of host[start, end) has a Latin lookalike
+    private static boolean looksLatin(String host, int start, int end) {
+        String skeleton = Confusables.skeleton(host, start, end);
+        for (int i = 0; i < skeleton.length(); i++) {
+            char c = skeleton.charAt(i);
+            if (c >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static String describe(EnumSet<UnicodeScript> scripts) {
+        StringJoiner names = new StringJoiner(" + ");
+        for (UnicodeScript script : scripts) {
+            String name = script.name().toLowerCase();
+            names.add(Character.toUpperCase(name.charAt(0)) + name.substring(1));
+        }
+        return names.toString();
+    }
+
+    /**
+     * Decoded host (null when it was plain ASCII) and why it looks spoofed
+     * (null when it does not)
+     */
+    static final class Result {
+        final String unicodeHost;
+        final String reason;
+
+        Result(String unicodeHost, String reason) {
+            this.unicodeHost = unicodeHost;
+            this.reason = reason;
+        }
+
+        boolean isSuspicious() {
+            return reason != null;
+        }
+    }
+}
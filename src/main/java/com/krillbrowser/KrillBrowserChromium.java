@@ -10,6 +10,7 @@ import org.cef.browser.CefBrowser;
 import org.cef.browser.CefFrame;
 import org.cef.handler.CefDisplayHandlerAdapter;
 import org.cef.handler.CefLoadHandlerAdapter;
+import org.cef.network.CefRequest;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,6 +18,8 @@ import java.awt.event.*;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Krill Browser v2.0 - Chromium-Powered Edition
@@ -28,6 +31,11 @@ public class KrillBrowserChromium extends JFrame {
 
     private static CefApp cefApp;
     private CefClient cefClient;
+    private SubresourceBlocker subresourceBlocker;
+
+    // nanoTime of each browser's last loadURL() call and main-frame load start
+    private final Map<CefBrowser, Long> loadRequestedAt = new ConcurrentHashMap<>();
+    private final Map<CefBrowser, Long> loadStartedAt = new ConcurrentHashMap<>();
     private JTabbedPane tabbedPane;
     private List<CefBrowser> browsers = new ArrayList<>();
     private JTextField urlBar;
@@ -58,6 +66,9 @@ public class KrillBrowserChromium extends JFrame {
         // Setup UI
         setupUI();
 
+        // Expose the managers to jconsole
+        ManagementBeans.register();
+
         // Create initial tab
         createNewTab("https://duckduckgo.com");
 
@@ -115,6 +126,10 @@ public class KrillBrowserChromium extends JFrame {
         cefApp = builder.build();
         cefClient = cefApp.createClient();
 
+        // Cancel tracker/ad subresources before Chromium downloads them
+        subresourceBlocker = new SubresourceBlocker();
+        cefClient.addRequestHandler(subresourceBlocker);
+
         // Setup display handler for URL updates
         cefClient.addDisplayHandler(new CefDisplayHandlerAdapter() {
             @Override
@@ -143,9 +158,41 @@ public class KrillBrowserChromium extends JFrame {
             public void onLoadingStateChange(CefBrowser browser, boolean isLoading, boolean canGoBack,
                     boolean canGoForward) {
                 SwingUtilities.invokeLater(() -> {
-                    statusBar.setText(isLoading ? "Loading..." : "Ready");
+                    statusBar.setText(isLoading ? "Loading..."
+                            : "Ready | 🛡️ " + subresourceBlocker.getBlockedCount() + " requests blocked");
                 });
             }
+
+            @Override
+            public void onLoadStart(CefBrowser browser, CefFrame frame, CefRequest.TransitionType transitionType) {
+                if (frame.isMain()) {
+                    long now = System.nanoTime();
+                    Long requested = loadRequestedAt.remove(browser);
+                    if (requested != null) {
+                        NavigationTimings.record(NavigationTimings.Stage.ENGINE_LOAD_START, now - requested);
+                    }
+                    loadStartedAt.put(browser, now);
+                }
+
+                // Element hiding goes in before the page's own content is parsed
+                CosmeticFilterEngine.Style style = AdvancedSecurityManager.getInstance()
+                        .getCosmeticStyle(frame.getURL());
+                if (style != null) {
+                    for (String script : style.injectionScripts()) {
+                        frame.executeJavaScript(script, frame.getURL(), 0);
+                    }
+                }
+            }
+
+            @Override
+            public void onLoadEnd(CefBrowser browser, CefFrame frame, int httpStatusCode) {
+                if (frame.isMain()) {
+                    Long started = loadStartedAt.remove(browser);
+                    if (started != null) {
+                        NavigationTimings.record(NavigationTimings.Stage.LOAD_FINISHED, System.nanoTime() - started);
+                    }
+                }
+            }
         });
     }
 
@@ -250,6 +297,21 @@ public class KrillBrowserChromium extends JFrame {
         });
         securityMenu.add(panicBtn);
 
+        securityMenu.addSeparator();
+
+        JMenuItem timingsBtn = new JMenuItem("Dump Navigation Timings");
+        timingsBtn.addActionListener(e -> {
+            try {
+                JOptionPane.showMessageDialog(this,
+                        "Saved to " + NavigationTimings.dump() + "\n\n" + NavigationTimings.report(),
+                        "Navigation Timings", JOptionPane.INFORMATION_MESSAGE);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Could not save timings: " + ex.getMessage(),
+                        "Navigation Timings", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        securityMenu.add(timingsBtn);
+
         menuBar.add(securityMenu);
 
         // Profiles menu
@@ -303,6 +365,9 @@ public class KrillBrowserChromium extends JFrame {
         if (index >= 0) {
             browsers.remove(index);
             tabbedPane.remove(index);
+            subresourceBlocker.forget(browser);
+            loadRequestedAt.remove(browser);
+            loadStartedAt.remove(browser);
             browser.close(false);
         }
 
@@ -313,37 +378,46 @@ public class KrillBrowserChromium extends JFrame {
     }
 
     private void loadUrl(String url) {
-        // Add protocol if missing
-        if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            if (url.contains(".") && !url.contains(" ")) {
-                url = "https://" + url;
-            } else {
-                // Search with DuckDuckGo
-                url = "https://duckduckgo.com/?q=" + url.replace(" ", "+");
-            }
-        }
-
-        // Security checks
-        AdvancedSecurityManager security = AdvancedSecurityManager.getInstance();
-        url = security.cleanUrl(url);
-
-        if (security.shouldBlockUrl(url)) {
-            JOptionPane.showMessageDialog(this,
-                    "🛡️ Blocked!\n\nThis site contains trackers or malware.",
-                    "Security Warning", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-
-        // Profile-based blocking
-        BrowserProfile profile = BrowserProfile.getInstance();
-        if (profile.shouldBlockSite(url)) {
-            JOptionPane.showMessageDialog(this,
-                    profile.getBlockMessage(),
-                    "Blocked by Profile", JOptionPane.INFORMATION_MESSAGE);
-            return;
+        // Protocol fix-up, HTTPS upgrade, tracking-parameter cleanup and every
+        // security check, with the URL parsed once
+        NavigationPolicy.Decision decision = NavigationPolicy.getInstance().evaluate(url,
+                subresourceBlocker.statsFor(getCurrentBrowser()));
+        url = decision.url;
+
+        switch (decision.action) {
+            case HTTPS_ONLY:
+                JOptionPane.showMessageDialog(this,
+                        "🔒 HTTPS-Only Mode\n\n" + decision.reason + "\n\nURL: " + url,
+                        "Security Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+
+            case PROFILE_BLOCKED:
+                // Profile-based blocking
+                JOptionPane.showMessageDialog(this,
+                        decision.reason,
+                        "Blocked by Profile", JOptionPane.INFORMATION_MESSAGE);
+                return;
+
+            case BLOCKED:
+                JOptionPane.showMessageDialog(this,
+                        "🛡️ Blocked!\n\n" + decision.reason,
+                        "Security Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+
+            case PHISHING:
+                JOptionPane.showMessageDialog(this,
+                        "🎣 Phishing Alert!\n\n" + decision.reason +
+                                "\n\nConfidence: " + decision.confidence + "%",
+                        "Security Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+
+            default:
+                break;
         }
 
-        getCurrentBrowser().loadURL(url);
+        CefBrowser browser = getCurrentBrowser();
+        loadRequestedAt.put(browser, System.nanoTime());
+        browser.loadURL(url);
         urlBar.setText(url);
 
         // Add to history
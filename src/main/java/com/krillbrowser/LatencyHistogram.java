@@ -0,0 +1,140 @@
+package com.krillbrowser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - Lock-free log-linear histogram of nanosecond durations
+ *
+ * Values are bucketed the way HdrHistogram does it: each power of two is
+ * split into 32 equal sub-buckets, so any recorded value is reported within
+ * about 3% of its true size, from 1 ns up to the whole long range. Recording
+ * is one atomic increment on an AtomicLongArray; there are no locks and no
+ * allocation, so any thread can record concurrently.
+ *
+ * snapshot() copies the counts for percentile queries (p50/p99/p999).
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Add another histogram's recordings to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0)
+                counts.addAndGet(i, count);
+        }
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, max.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    /**
+     * Largest value that falls into a bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_COUNT)
+            return bucket;
+        int shift = (bucket >> SUB_BITS) - 1;
+        long lowest = (long) (SUB_COUNT + (bucket & (SUB_COUNT - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Counts copied at one point in time
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long total, long max) {
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Value (ns) at or below which the given fraction of recordings fall
+         */
+        public long percentile(double fraction) {
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return percentile(0.50);
+        }
+
+        public long getP99() {
+            return percentile(0.99);
+        }
+
+        public long getP999() {
+            return percentile(0.999);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.krillbrowser;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.*;
+
+/**
+ * ManagementBeans - JMX view of the security and storage managers
+ *
+ * Registers one MXBean per manager under the "com.krillbrowser" domain, so a
+ * running browser can be inspected and tuned with jconsole or any other JMX
+ * client: rule and list sizes, verdict cache hit rates, how far the event
+ * log and blocklist journal are behind, and how long persistence writes take.
+ * Operations reload the blocklists, force a flush, clear caches and switch
+ * profiles.
+ *
+ * Latencies are LatencyHistogram snapshots in nanoseconds.
+ * Disable with -Dkrill.jmx=false.
+ */
+public final class ManagementBeans {
+
+    private static final String DOMAIN = "com.krillbrowser";
+    private static boolean registered;
+
+    private ManagementBeans() {
+    }
+
+    /**
+     * Register every bean with the platform MBean server (once)
+     */
+    public static synchronized void register() {
+        if (registered || !Boolean.parseBoolean(System.getProperty("krill.jmx", "true")))
+            return;
+        registered = true;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, "type=AdvancedSecurityManager", new Security(AdvancedSecurityManager.getInstance()));
+        register(server, "type=PhishingDetector", new Phishing(PhishingDetector.getInstance()));
+        register(server, "type=CookieManager", new Cookies(CookieManager.getInstance()));
+        register(server, "type=HistoryManager", new History(HistoryManager.getInstance()));
+        register(server, "type=BrowserProfile", new Profiles(BrowserProfile.getInstance()));
+        register(server, "type=EventLog", new Log());
+
+        // The managers above (and SecurityManager) have created their caches by now
+        SecurityManager.getInstance();
+        for (VerdictCache<?> cache : VerdictCache.getAll()) {
+            register(server, "type=VerdictCache,name=" + ObjectName.quote(cache.getName()), new Cache(cache));
+        }
+    }
+
+    private static void register(MBeanServer server, String properties, Object bean) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register management bean " + properties + ": " + e.getMessage());
+        }
+    }
+
+    public interface SecurityMXBean {
+        int getBlockedDomainsCount();
+
+        int getHostsFileHostCount();
+
+        int getNetworkFilterCount();
+
+        int getCosmeticFilterCount();
+
+        int getBloomFilterBytes();
+
+        double getBloomFilterFalsePositiveRate();
+
+        long getJournalBytes();
+
+        LatencyHistogram.Snapshot getCompactionLatency();
+
+        Map<String, Long> getSecurityStats();
+
+        List<String> getTopBlockedHosts();
+
+        boolean isBlockTrackers();
+
+        void setBlockTrackers(boolean block);
+
+        boolean isBlockAds();
+
+        void setBlockAds(boolean block);
+
+        boolean isHttpsOnly();
+
+        void setHttpsOnly(boolean httpsOnly);
+
+        void reloadBlocklists();
+
+        boolean flushBlocklist();
+
+        void clearCaches();
+    }
+
+    public interface PhishingMXBean {
+        int getKnownPhishingDomainCount();
+
+        int getTopDomainCount();
+    }
+
+    public interface CookiesMXBean {
+        int getCookieCount();
+
+        int getDomainCount();
+
+        LatencyHistogram.Snapshot getFlushLatency();
+
+        void flush();
+    }
+
+    public interface HistoryMXBean {
+        int getHistorySize();
+
+        LatencyHistogram.Snapshot getFlushLatency();
+
+        void flush();
+    }
+
+    public interface ProfilesMXBean {
+        String getCurrentProfile();
+
+        List<String> getProfiles();
+
+        void switchProfile(String profile);
+    }
+
+    public interface LogMXBean {
+        long getQueueDepth();
+
+        long getDroppedCount();
+
+        String getLevel();
+
+        void setLevel(String level);
+    }
+
+    public interface CacheMXBean {
+        int getSize();
+
+        long getHits();
+
+        long getMisses();
+
+        double getHitRate();
+
+        void clear();
+    }
+
+    private static final class Security implements SecurityMXBean {
+        private final AdvancedSecurityManager manager;
+
+        Security(AdvancedSecurityManager manager) {
+            this.manager = manager;
+        }
+
+        public int getBlockedDomainsCount() {
+            return manager.getBlockedDomainsCount();
+        }
+
+        public int getHostsFileHostCount() {
+            return manager.getHostsFileHostCount();
+        }
+
+        public int getNetworkFilterCount() {
+            return manager.getNetworkFilterCount();
+        }
+
+        public int getCosmeticFilterCount() {
+            return manager.getCosmeticFilterCount();
+        }
+
+        public int getBloomFilterBytes() {
+            return manager.getBloomFilterBytes();
+        }
+
+        public double getBloomFilterFalsePositiveRate() {
+            return manager.getBloomFilterFalsePositiveRate();
+        }
+
+        public long getJournalBytes() {
+            return manager.getJournalBytes();
+        }
+
+        public LatencyHistogram.Snapshot getCompactionLatency() {
+            return manager.getCompactionLatency();
+        }
+
+        public Map<String, Long> getSecurityStats() {
+            return manager.getSecurityStats();
+        }
+
+        public List<String> getTopBlockedHosts() {
+            List<String> hosts = new ArrayList<>();
+            for (SecurityStats.HostCount host : SecurityStats.global().getTopBlockedHosts(20)) {
+                hosts.add(host.toString());
+            }
+            return hosts;
+        }
+
+        public boolean isBlockTrackers() {
+            return manager.isBlockTrackers();
+        }
+
+        public void setBlockTrackers(boolean block) {
+            manager.setBlockTrackers(block);
+        }
+
+        public boolean isBlockAds() {
+            return manager.isBlockAds();
+        }
+
+        public void setBlockAds(boolean block) {
+            manager.setBlockAds(block);
+        }
+
+        public boolean isHttpsOnly() {
+            return manager.isHttpsOnly();
+        }
+
+        public void setHttpsOnly(boolean httpsOnly) {
+            manager.setHttpsOnly(httpsOnly);
+        }
+
+        public void reloadBlocklists() {
+            manager.reloadBlocklists();
+        }
+
+        public boolean flushBlocklist() {
+            return manager.flushBlocklist();
+        }
+
+        public void clearCaches() {
+            VerdictCache.clearAll();
+        }
+    }
+
+    private static final class Phishing implements PhishingMXBean {
+        private final PhishingDetector detector;
+
+        Phishing(PhishingDetector detector) {
+            this.detector = detector;
+        }
+
+        public int getKnownPhishingDomainCount() {
+            return detector.getKnownPhishingDomainCount();
+        }
+
+        public int getTopDomainCount() {
+            return detector.getTopDomainCount();
+        }
+    }
+
+    private static final class Cookies implements CookiesMXBean {
+        private final CookieManager manager;
+
+        Cookies(CookieManager manager) {
+            this.manager = manager;
+        }
+
+        public int getCookieCount() {
+            return manager.getCookieCount();
+        }
+
+        public int getDomainCount() {
+            return manager.getDomainCount();
+        }
+
+        public LatencyHistogram.Snapshot getFlushLatency() {
+            return manager.getFlushLatency();
+        }
+
+        public void flush() {
+            manager.flush();
+        }
+    }
+
+    private static final class History implements HistoryMXBean {
+        private final HistoryManager manager;
+
+        History(HistoryManager manager) {
+            this.manager = manager;
+        }
+
+        public int getHistorySize() {
+            return manager.getHistorySize();
+        }
+
+        public LatencyHistogram.Snapshot getFlushLatency() {
+            return manager.getFlushLatency();
+        }
+
+        public void flush() {
+            manager.flush();
+        }
+    }
+
+    private static final class Profiles implements ProfilesMXBean {
+        private final BrowserProfile profiles;
+
+        Profiles(BrowserProfile profiles) {
+            this.profiles = profiles;
+        }
+
+        public String getCurrentProfile() {
+            return profiles.getCurrentProfile().name();
+        }
+
+        public List<String> getProfiles() {
+            List<String> names = new ArrayList<>();
+            for (BrowserProfile.ProfileType type : BrowserProfile.ProfileType.values()) {
+                names.add(type.name());
+            }
+            return names;
+        }
+
+        public void switchProfile(String profile) {
+            profiles.switchProfile(BrowserProfile.ProfileType.valueOf(profile.trim().toUpperCase()));
+        }
+    }
+
+    private static final class Log implements LogMXBean {
+        public long getQueueDepth() {
+            return EventLog.getQueueDepth();
+        }
+
+        public long getDroppedCount() {
+            return EventLog.getDroppedCount();
+        }
+
+        public String getLevel() {
+            return EventLog.getLevel().name();
+        }
+
+        public void setLevel(String level) {
+            EventLog.setLevel(EventLog.Level.valueOf(level.trim().toUpperCase()));
+        }
+    }
+
+    private static final class Cache implements CacheMXBean {
+        private final VerdictCache<?> cache;
+
+        Cache(VerdictCache<?> cache) {
+            this.cache = cache;
+        }
+
+        public int getSize() {
+            return cache.size();
+        }
+
+        public long getHits() {
+            return cache.getHits();
+        }
+
+        public long getMisses() {
+            return cache.getMisses();
+        }
+
+        public double getHitRate() {
+            return cache.getHitRate();
+        }
+
+        public void clear() {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.krillbrowser;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * NavigationTimings - Where the time of a navigation goes
+ *
+ * One LatencyHistogram per stage. NavigationPolicy records the Java policy
+ * stages; the front-ends record how long the engine took to start the load
+ * and to finish it. Comparing the stages tells a slow policy check apart
+ * from a slow engine or network.
+ */
+public final class NavigationTimings {
+
+    public enum Stage {
+        NORMALIZE, // Protocol fix-up / search URL
+        HTTPS_UPGRADE, // HTTPS-only check and http -> https
+        CLEAN_URL, // Tracking-parameter removal and parsing
+        PROFILE_CHECK,
+        BLOCKLIST_CHECK,
+        PHISHING_CHECK,
+        ENGINE_LOAD_START, // load() called -> engine reports the load started
+        LOAD_FINISHED // Load started -> main document finished
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Stage.values().length];
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private NavigationTimings() {
+    }
+
+    public static void record(Stage stage, long nanos) {
+        HISTOGRAMS[stage.ordinal()].record(nanos);
+    }
+
+    public static LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return HISTOGRAMS[stage.ordinal()].snapshot();
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per stage: count, p50, p99, p999 and max in microseconds
+     */
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-18s %10s %12s %12s %12s %12s%n", "stage", "count", "p50 us", "p99 us",
+                "p999 us", "max us"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot s = snapshot(stage);
+            out.append(String.format("%-18s %10d %12.1f %12.1f %12.1f %12.1f%n", stage, s.getCount(),
+                    s.getP50() / 1000.0, s.getP99() / 1000.0, s.getP999() / 1000.0, s.getMax() / 1000.0));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write report() to ~/.krillbrowser/logs/navigation-timings-<time>.txt
+     */
+    public static Path dump() throws IOException {
+        Path dir = Paths.get(System.getProperty("user.home"), ".krillbrowser", "logs");
+        Files.createDirectories(dir);
+        Path file = dir.resolve("navigation-timings-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt");
+        Files.writeString(file, report());
+        return file;
+    }
+}
@@ -0,0 +1,379 @@
+package com.krillbrowser;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * PhishingDetector - Detects phishing attempts and suspicious URLs
+ * 
+ * Checks for:
+ * - Known phishing domains
+ * - Lookalike domain attacks (paypa1.com instead of paypal.com)
+ * - Typosquats of popular domains (paypall.com), see TyposquatIndex
+ * - Suspicious URL patterns
+ * - Homoglyph attacks (using similar-looking characters, see Confusables)
+ * - Internationalized names that mix scripts (see IdnSpoofChecker)
+ */
+public class PhishingDetector {
+
+    private static PhishingDetector instance;
+
+    // Known legitimate domains to protect
+    private static final Map<String, String[]> PROTECTED_BRANDS = new HashMap<>();
+    static {
+        PROTECTED_BRANDS.put("paypal", new String[] { "paypal.com", "paypal.me" });
+        PROTECTED_BRANDS.put("google", new String[] { "google.com", "gmail.com", "accounts.google.com" });
+        PROTECTED_BRANDS.put("apple", new String[] { "apple.com", "icloud.com", "appleid.apple.com" });
+        PROTECTED_BRANDS.put("amazon", new String[] { "amazon.com", "aws.amazon.com" });
+        PROTECTED_BRANDS.put("microsoft", new String[] { "microsoft.com", "live.com", "outlook.com" });
+        PROTECTED_BRANDS.put("facebook", new String[] { "facebook.com", "fb.com", "meta.com" });
+        PROTECTED_BRANDS.put("netflix", new String[] { "netflix.com" });
+        PROTECTED_BRANDS.put("bank", new String[] { "chase.com", "bankofamerica.com", "wellsfargo.com", "citi.com" });
+    }
+
+    // Known phishing domains (sample - would be updated regularly in production)
+    private Set<String> knownPhishingDomains;
+
+    // Popular registrable domains, from ~/.krillbrowser/top-domains.txt
+    private final TyposquatIndex topDomains;
+
+    // ASCII (punycode) domain -> result of the domain-only checks, including
+    // the IDN decoding and script analysis; invalidated by rule changes
+    private final VerdictCache<DomainVerdict> domainVerdicts =
+            new VerdictCache<>("phishing", VerdictCache.DEFAULT_CAPACITY);
+
+    private static final PhishingResult SAFE = new PhishingResult(false, null, 0);
+
+    // Suspicious patterns: words that appear in this order anywhere in the URL
+    private static final String[] SUSPICIOUS_PATTERNS = {
+            "login.*verify",
+            "account.*suspended",
+            "update.*payment",
+            "secure.*login",
+            "verify.*identity",
+            "confirm.*account"
+    };
+    private static final UrlPatternMatcher SUSPICIOUS_URL_MATCHER = UrlPatternMatcher.compile(SUSPICIOUS_PATTERNS);
+
+    private static final PhishingResult SUSPICIOUS_PATTERN =
+            new PhishingResult(true, "Suspicious URL pattern detected", 70);
+    private static final PhishingResult IP_ADDRESS_HOST =
+            new PhishingResult(true, "URL contains IP address (suspicious)", 75);
+
+    // Skeleton -> brand, for brand names and the first label of each of
+    // their domains (at least 4 characters, so "fb" does not match noise)
+    private static final Map<String, String> BRAND_SKELETONS = new HashMap<>();
+    // Skeleton -> the genuine spelling it came from
+    private static final Map<String, String> BRAND_SPELLINGS = new HashMap<>();
+    static {
+        for (Map.Entry<String, String[]> brand : PROTECTED_BRANDS.entrySet()) {
+            protect(brand.getKey(), brand.getKey());
+            for (String domain : brand.getValue()) {
+                // The label before the TLD: "google" for accounts.google.com
+                int lastDot = domain.lastIndexOf('.');
+                String label = domain.substring(domain.lastIndexOf('.', lastDot - 1) + 1, lastDot);
+                if (label.length() >= 4)
+                    protect(label, brand.getKey());
+            }
+        }
+    }
+
+    private static void protect(String spelling, String brand) {
+        String skeleton = Confusables.skeleton(spelling);
+        BRAND_SKELETONS.put(skeleton, brand);
+        BRAND_SPELLINGS.put(skeleton, spelling);
+    }
+
+    private PhishingDetector() {
+        knownPhishingDomains = new HashSet<>();
+        loadPhishingDatabase();
+        topDomains = new TyposquatIndex(loadTopDomains());
+    }
+
+    public static synchronized PhishingDetector getInstance() {
+        if (instance == null) {
+            instance = new PhishingDetector();
+        }
+        return instance;
+    }
+
+    private void loadPhishingDatabase() {
+        // Common phishing domain patterns
+        String[] phishingDomains = {
+                "paypa1.com", "paypal-verify.com", "paypal-secure.net",
+                "g00gle.com", "google-login.net", "accounts-google.com",
+                "app1e.com", "apple-id-verify.com", "icloud-secure.net",
+                "amaz0n.com", "amazon-order.net", "amazon-secure.com",
+                "faceb00k.com", "facebook-login.net", "fb-verify.com",
+                "netf1ix.com", "netflix-update.com",
+                "micros0ft.com", "microsoft-verify.net",
+                "chasebank-verify.com", "bankofamerica-secure.net",
+                "secure-login-verify.com", "account-update-required.net",
+                "verify-your-account.com", "payment-update.net"
+        };
+        Collections.addAll(knownPhishingDomains, phishingDomains);
+    }
+
+    /**
+     * Registrable domains to protect from typosquatting, most popular first:
+     * the protected brands' own, then top-domains.txt (one domain per line,
+     * or "rank,domain" as in the Tranco and Umbrella lists).
+     *
+     * Empty without top-domains.txt: a name one edit from a brand is only
+     * suspicious if it is not a popular site itself, and the brands alone
+     * cannot tell (apply.com and chose.com are real sites).
+     */
+    private Collection<String> loadTopDomains() {
+        List<String> listed = new ArrayList<>();
+        Path topDomainsPath = getDataDirectory().resolve("top-domains.txt");
+        if (Files.exists(topDomainsPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(topDomainsPath)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#"))
+                        continue;
+                    listed.add(line.substring(line.lastIndexOf(',') + 1).trim().toLowerCase());
+                }
+            } catch (IOException e) {
+                System.err.println("Could not load top domains: " + e.getMessage());
+            }
+        }
+        if (listed.isEmpty())
+            return listed;
+
+        Set<String> domains = new LinkedHashSet<>();
+        for (String[] legitimateDomains : PROTECTED_BRANDS.values()) {
+            for (String domain : legitimateDomains) {
+                domains.add(domain.substring(ParsedUrl.siteStart(domain, 0, domain.length())));
+            }
+        }
+        domains.addAll(listed);
+        return domains;
+    }
+
+    private Path getDataDirectory() {
+        String userHome = System.getProperty("user.home");
+        Path dataDir = Paths.get(userHome, ".krillbrowser");
+        try {
+            Files.createDirectories(dataDir);
+        } catch (IOException e) {
+            System.err.println("Failed to create data directory");
+        }
+        return dataDir;
+    }
+
+    /**
+     * Check if a URL is potentially phishing
+     */
+    public PhishingResult checkUrl(String url) {
+        if (url == null)
+            return SAFE;
+        return checkUrl(ParsedUrl.parse(url));
+    }
+
+    PhishingResult checkUrl(ParsedUrl parsed) {
+        String url = parsed.url();
+        String lowerDomain = parsed.host();
+
+        DomainVerdict verdict = domainVerdicts.get(lowerDomain);
+        if (verdict == null) {
+            long generation = VerdictCache.currentGeneration();
+            verdict = checkDomain(lowerDomain);
+            domainVerdicts.put(lowerDomain, verdict, generation);
+        }
+
+        // Checks 1-2: known phishing domains and lookalikes
+        if (verdict.brandResult != null) {
+            return verdict.brandResult;
+        }
+
+        // Check 3: Suspicious URL patterns, all in one pass over the URL
+        if (SUSPICIOUS_URL_MATCHER.find(url) >= 0) {
+            return SUSPICIOUS_PATTERN;
+        }
+
+        // Checks 4-5: Too many subdomains, IP address instead of a host name
+        if (verdict.structureResult != null) {
+            return verdict.structureResult;
+        }
+
+        return SAFE;
+    }
+
+    /**
+     * Run the checks that depend only on the domain, so they can be cached
+     */
+    private DomainVerdict checkDomain(String lowerDomain) {
+        // Check 1: Known phishing domains
+        if (knownPhishingDomains.contains(lowerDomain)) {
+            return new DomainVerdict(new PhishingResult(true, "Known phishing domain", 100), null);
+        }
+
+        // Check 2: Lookalike domain detection
+        for (Map.Entry<String, String[]> brand : PROTECTED_BRANDS.entrySet()) {
+            String brandName = brand.getKey();
+
+            // Check if domain contains brand name but isn't the real domain
+            if (lowerDomain.contains(brandName) && !isLegitimate(lowerDomain, brand.getValue())) {
+                return new DomainVerdict(new PhishingResult(true,
+                        "Suspicious " + brandName + " lookalike domain", 85), null);
+            }
+        }
+
+        // Internationalized names are judged by what they spell, not by
+        // their xn-- form
+        IdnSpoofChecker.Result idn = IdnSpoofChecker.check(lowerDomain);
+        String spelledDomain = idn.unicodeHost != null ? idn.unicodeHost : lowerDomain;
+
+        // Check for character substitutions (paypa1, pаypal with a Cyrillic a)
+        String impersonated = impersonatedBrand(spelledDomain);
+        if (impersonated != null) {
+            return new DomainVerdict(new PhishingResult(true,
+                    "Possible " + impersonated + " impersonation (character substitution)", 90), null);
+        }
+
+        // Check for labels mixing scripts or faking Latin with another one
+        if (idn.isSuspicious()) {
+            return new DomainVerdict(new PhishingResult(true, idn.reason + ": " + spelledDomain, 85), null);
+        }
+
+        // Check for typos of popular domains (paypall.com, gooogle.com)
+        int siteStart = ParsedUrl.siteStart(lowerDomain, 0, lowerDomain.length());
+        String site = lowerDomain.substring(siteStart);
+        int maxDistance = typoDistance(site);
+        if (maxDistance > 0) {
+            TyposquatIndex.Match closest = topDomains.closest(site, maxDistance);
+            // Distance 0 is the popular domain itself
+            if (closest != null && closest.distance > 0) {
+                return new DomainVerdict(new PhishingResult(true,
+                        "Possible typosquat of " + closest.domain + " (" + closest.distance
+                                + (closest.distance == 1 ? " edit" : " edits") + " away)",
+                        closest.distance == 1 ? 80 : 65, closest.domain, closest.distance), null);
+            }
+        }
+
+        // Check 4: Too many subdomains (common phishing tactic), counted in
+        // front of the registrable domain, so a.b.bbc.co.uk has two
+        int subdomainCount = 0;
+        for (int i = siteStart - 1; i >= 0; i--) {
+            if (lowerDomain.charAt(i) == '.')
+                subdomainCount++;
+        }
+        if (subdomainCount > 2) {
+            return new DomainVerdict(null, new PhishingResult(true,
+                    "Unusually complex domain structure", 60));
+        }
+
+        // Check 5: IP address as host (often phishing)
+        if (ParsedUrl.isIpv4(lowerDomain, 0, lowerDomain.length())
+                || ParsedUrl.isIpv6(lowerDomain, 0, lowerDomain.length())) {
+            return new DomainVerdict(null, IP_ADDRESS_HOST);
+        }
+
+        return new DomainVerdict(null, null);
+    }
+
+    private static boolean isLegitimate(String domain, String[] legitimateDomains) {
+        for (String legit : legitimateDomains) {
+            if (domain.equals(legit) || domain.endsWith("." + legit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Brand whose name or domain label is spelled with lookalike characters
+     * in one of the host's labels (or a hyphen-separated part of one), or null
+     */
+    private static String impersonatedBrand(String domain) {
+        int start = 0;
+        while (start < domain.length()) {
+            int end = start;
+            while (end < domain.length() && domain.charAt(end) != '.' && domain.charAt(end) != '-') {
+                end++;
+            }
+            if (end > start) {
+                String skeleton = Confusables.skeleton(domain, start, end);
+                String brand = BRAND_SKELETONS.get(skeleton);
+                if (brand != null && !isGenuineSpelling(domain, start, end, BRAND_SPELLINGS.get(skeleton))
+                        && !isLegitimate(domain, PROTECTED_BRANDS.get(brand))) {
+                    return brand;
+                }
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Edits a site may be away from a popular domain and still count as a
+     * typo of it. Short names are a few edits away from many real sites.
+     */
+    private static int typoDistance(String site) {
+        int dot = site.indexOf('.');
+        int labelLength = dot < 0 ? site.length() : dot;
+        if (labelLength < 5)
+            return 0;
+        return labelLength < 9 ? 1 : 2;
+    }
+
+    // The genuine spelling is check 2's business, not a homoglyph
+    private static boolean isGenuineSpelling(String domain, int start, int end, String spelling) {
+        return end - start == spelling.length() && domain.startsWith(spelling, start);
+    }
+
+    public int getKnownPhishingDomainCount() {
+        return knownPhishingDomains.size();
+    }
+
+    public int getTopDomainCount() {
+        return topDomains.size();
+    }
+
+    public void addPhishingDomain(String domain) {
+        knownPhishingDomains.add(domain.toLowerCase());
+        VerdictCache.bumpGeneration();
+    }
+
+    /**
+     * Cached outcome of the domain-only checks. brandResult outranks the URL
+     * pattern check; structureResult (subdomains, IP host) ranks below it.
+     */
+    private static class DomainVerdict {
+        final PhishingResult brandResult;
+        final PhishingResult structureResult;
+
+        DomainVerdict(PhishingResult brandResult, PhishingResult structureResult) {
+            this.brandResult = brandResult;
+            this.structureResult = structureResult;
+        }
+    }
+
+    /**
+     * Result of phishing check
+     */
+    public static class PhishingResult {
+        public final boolean isPhishing;
+        public final String reason;
+        public final int confidence; // 0-100
+        // For a typosquat: the popular domain it imitates and how many edits away
+        public final String closestDomain;
+        public final int distance;
+
+        public PhishingResult(boolean isPhishing, String reason, int confidence) {
+            this(isPhishing, reason, confidence, null, -1);
+        }
+
+        public PhishingResult(boolean isPhishing, String reason, int confidence, String closestDomain,
+                int distance) {
+            this.isPhishing = isPhishing;
+            this.reason = reason;
+            this.confidence = confidence;
+            this.closestDomain = closestDomain;
+            this.distance = distance;
+        }
+    }
+}
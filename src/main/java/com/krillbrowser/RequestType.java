@@ -0,0 +1,18 @@
+package com.krillbrowser;
+
+/**
+ * Kind of resource a request loads, used by filter type options ($script, $image, ...)
+ */
+public enum RequestType {
+    DOCUMENT, // Top-level navigation
+    SUBDOCUMENT, // Frame/iframe
+    SCRIPT,
+    STYLESHEET,
+    IMAGE,
+    XMLHTTPREQUEST,
+    MEDIA,
+    FONT,
+    WEBSOCKET,
+    PING,
+    OTHER
+}
@@ -0,0 +1,315 @@
+package com.krillbrowser;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SecurityStats - Counts what the privacy features actually did
+ *
+ * There is one global view and one view per tab; a tab view forwards every
+ * event to the global one. Counters are LongAdders (striped cells), so
+ * request threads recording blocks never contend on a shared counter.
+ *
+ * The hosts blocked most often are tracked with a Space-Saving sketch
+ * (Metwally et al.): a fixed number of counters, where a new host replaces
+ * the smallest one and inherits its count as error bound. The sketch is
+ * split into stripes picked by thread, so request threads rarely share a lock.
+ * A host blocked more than total/capacity times exceeds that share in at
+ * least one stripe, so it is still tracked somewhere and shows up in the
+ * merged counts (before they are cut to the requested limit).
+ *
+ * Blocked requests for visible content (frames, images, media, styles,
+ * fonts) count as ads, everything else (scripts, XHR, pings) as trackers.
+ * Bytes avoided is an estimate from typical response sizes per request type.
+ */
+public final class SecurityStats {
+
+    public enum Counter {
+        TRACKERS_BLOCKED,
+        ADS_BLOCKED,
+        HTTPS_UPGRADES,
+        PHISHING_HITS,
+        BYTES_AVOIDED
+    }
+
+    private static final int GLOBAL_TOP_CAPACITY = 64;
+    private static final int TAB_TOP_CAPACITY = 16;
+
+    // Typical transfer size per RequestType (HTTP Archive medians, rounded)
+    private static final long[] ESTIMATED_BYTES = new long[RequestType.values().length];
+    static {
+        ESTIMATED_BYTES[RequestType.DOCUMENT.ordinal()] = 30_000;
+        ESTIMATED_BYTES[RequestType.SUBDOCUMENT.ordinal()] = 40_000;
+        ESTIMATED_BYTES[RequestType.SCRIPT.ordinal()] = 25_000;
+        ESTIMATED_BYTES[RequestType.STYLESHEET.ordinal()] = 10_000;
+        ESTIMATED_BYTES[RequestType.IMAGE.ordinal()] = 12_000;
+        ESTIMATED_BYTES[RequestType.XMLHTTPREQUEST.ordinal()] = 2_000;
+        ESTIMATED_BYTES[RequestType.MEDIA.ordinal()] = 150_000;
+        ESTIMATED_BYTES[RequestType.FONT.ordinal()] = 30_000;
+        ESTIMATED_BYTES[RequestType.WEBSOCKET.ordinal()] = 1_000;
+        ESTIMATED_BYTES[RequestType.PING.ordinal()] = 500;
+        ESTIMATED_BYTES[RequestType.OTHER.ordinal()] = 5_000;
+    }
+
+    // Power of two, at most one stripe per core
+    private static final int GLOBAL_STRIPES =
+            Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()));
+
+    private static final SecurityStats GLOBAL = new SecurityStats(null, GLOBAL_TOP_CAPACITY, GLOBAL_STRIPES);
+
+    private final SecurityStats parent;
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final HeavyHitters blockedHosts;
+
+    private SecurityStats(SecurityStats parent, int topCapacity, int stripes) {
+        this.parent = parent;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        blockedHosts = new HeavyHitters(topCapacity, stripes);
+    }
+
+    /**
+     * Totals for the whole browser
+     */
+    public static SecurityStats global() {
+        return GLOBAL;
+    }
+
+    /**
+     * New view for one tab; its events are also counted globally
+     */
+    public static SecurityStats forTab() {
+        return new SecurityStats(GLOBAL, TAB_TOP_CAPACITY, 1);
+    }
+
+    /**
+     * Record a blocked request to a lowercase host
+     */
+    public void recordBlock(String host, RequestType type) {
+        for (SecurityStats view = this; view != null; view = view.parent) {
+            view.counters[isAd(type) ? Counter.ADS_BLOCKED.ordinal() : Counter.TRACKERS_BLOCKED.ordinal()]
+                    .increment();
+            view.counters[Counter.BYTES_AVOIDED.ordinal()].add(ESTIMATED_BYTES[type.ordinal()]);
+            view.blockedHosts.add(host);
+        }
+    }
+
+    public void recordHttpsUpgrade() {
+        increment(Counter.HTTPS_UPGRADES);
+    }
+
+    public void recordPhishingHit() {
+        increment(Counter.PHISHING_HITS);
+    }
+
+    private void increment(Counter counter) {
+        for (SecurityStats view = this; view != null; view = view.parent) {
+            view.counters[counter.ordinal()].increment();
+        }
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Current counter values; cheap enough to poll from the UI
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[counters.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters[i].sum();
+        }
+        return new Snapshot(values);
+    }
+
+    /**
+     * Hosts blocked most often, highest count first
+     */
+    public List<HostCount> getTopBlockedHosts(int limit) {
+        return blockedHosts.top(limit);
+    }
+
+    private static boolean isAd(RequestType type) {
+        switch (type) {
+            case SUBDOCUMENT:
+            case IMAGE:
+            case MEDIA:
+            case STYLESHEET:
+            case FONT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Counter values at one point in time
+     */
+    public static final class Snapshot {
+        private final long[] values;
+
+        private Snapshot(long[] values) {
+            this.values = values;
+        }
+
+        public long get(Counter counter) {
+            return values[counter.ordinal()];
+        }
+
+        public long getTrackersBlocked() {
+            return get(Counter.TRACKERS_BLOCKED);
+        }
+
+        public long getAdsBlocked() {
+            return get(Counter.ADS_BLOCKED);
+        }
+
+        public long getHttpsUpgrades() {
+            return get(Counter.HTTPS_UPGRADES);
+        }
+
+        public long getPhishingHits() {
+            return get(Counter.PHISHING_HITS);
+        }
+
+        public long getBytesAvoided() {
+            return get(Counter.BYTES_AVOIDED);
+        }
+    }
+
+    /**
+     * Estimated block count for a host; the true count lies in [count - error, count]
+     */
+    public static final class HostCount {
+        public final String host;
+        public final long count;
+        public final long error;
+
+        HostCount(String host, long count, long error) {
+            this.host = host;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return host + "=" + count;
+        }
+    }
+
+    /**
+     * Space-Saving top-K sketch, striped by thread
+     */
+    private static final class HeavyHitters {
+        private final Stripe[] stripes;
+
+        HeavyHitters(int capacity, int stripeCount) {
+            stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe(capacity);
+            }
+        }
+
+        void add(String key) {
+            Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+            synchronized (stripe) {
+                stripe.add(key);
+            }
+        }
+
+        /**
+         * Merge the stripes: counts and error bounds of the same host add up.
+         * A stripe that does not track a host may still have seen it up to
+         * its smallest counter times, so that much goes into both the count
+         * and the error for the host.
+         */
+        List<HostCount> top(int limit) {
+            Map<String, long[]> merged = new HashMap<>();
+            long[] untracked = new long[stripes.length];
+            List<Map<String, long[]>> copies = new ArrayList<>(stripes.length);
+            for (int i = 0; i < stripes.length; i++) {
+                Stripe stripe = stripes[i];
+                Map<String, long[]> copy = new HashMap<>(stripe.capacity * 2);
+                synchronized (stripe) {
+                    for (Map.Entry<String, long[]> entry : stripe.counts.entrySet()) {
+                        copy.put(entry.getKey(), entry.getValue().clone());
+                    }
+                    untracked[i] = stripe.minCount();
+                }
+                copies.add(copy);
+                for (Map.Entry<String, long[]> entry : copy.entrySet()) {
+                    long[] total = merged.computeIfAbsent(entry.getKey(), k -> new long[2]);
+                    total[0] += entry.getValue()[0];
+                    total[1] += entry.getValue()[1];
+                }
+            }
+            for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+                for (int i = 0; i < stripes.length; i++) {
+                    if (untracked[i] != 0 && !copies.get(i).containsKey(entry.getKey())) {
+                        entry.getValue()[0] += untracked[i];
+                        entry.getValue()[1] += untracked[i];
+                    }
+                }
+            }
+            List<HostCount> result = new ArrayList<>(merged.size());
+            for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+                result.add(new HostCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+            result.sort((a, b) -> Long.compare(b.count, a.count));
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        }
+    }
+
+    private static final class Stripe {
+        private final int capacity;
+        // host -> {count, error}
+        private final Map<String, long[]> counts;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            counts = new HashMap<>(capacity * 2);
+        }
+
+        void add(String key) {
+            long[] counter = counts.get(key);
+            if (counter != null) {
+                counter[0]++;
+                return;
+            }
+            if (counts.size() < capacity) {
+                counts.put(key, new long[] { 1, 0 });
+                return;
+            }
+
+            // Full: the new host takes over the smallest counter
+            String minKey = null;
+            long[] min = null;
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                if (min == null || entry.getValue()[0] < min[0]) {
+                    minKey = entry.getKey();
+                    min = entry.getValue();
+                }
+            }
+            counts.remove(minKey);
+            min[1] = min[0];
+            min[0]++;
+            counts.put(key, min);
+        }
+
+        /**
+         * Most times an untracked host can have been added: 0 until the
+         * stripe fills up, then its smallest counter
+         */
+        long minCount() {
+            if (counts.size() < capacity)
+                return 0;
+            long min = Long.MAX_VALUE;
+            for (long[] counter : counts.values()) {
+                min = Math.min(min, counter[0]);
+            }
+            return min;
+        }
+    }
+}
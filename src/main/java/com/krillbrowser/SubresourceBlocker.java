@@ -0,0 +1,161 @@
+package com.krillbrowser;
+
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.handler.CefCookieAccessFilter;
+import org.cef.handler.CefCookieAccessFilterAdapter;
+import org.cef.handler.CefRequestHandlerAdapter;
+import org.cef.handler.CefResourceRequestHandler;
+import org.cef.handler.CefResourceRequestHandlerAdapter;
+import org.cef.misc.BoolRef;
+import org.cef.network.CefCookie;
+import org.cef.network.CefRequest;
+import org.cef.network.CefResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SubresourceBlocker - Cancels tracker and ad requests inside Chromium
+ *
+ * Every request a page makes (scripts, pixels, iframes, XHR) is checked
+ * against the AdvancedSecurityManager rules before Chromium sends it, so
+ * blocked resources are never downloaded. Top-level navigations are left
+ * to NavigationPolicy. Third-party cookies are withheld here as well.
+ *
+ * CEF calls this on its IO thread; nothing here touches Swing.
+ */
+class SubresourceBlocker extends CefRequestHandlerAdapter {
+
+    private final AdvancedSecurityManager security = AdvancedSecurityManager.getInstance();
+    private final LongAdder blockedCount = new LongAdder();
+    private final Map<CefBrowser, SecurityStats> tabStats = new ConcurrentHashMap<>();
+
+    // Cookies go only to the page's own site while third-party cookies are blocked
+    private final CefCookieAccessFilter cookieFilter = new CefCookieAccessFilterAdapter() {
+        @Override
+        public boolean canSendCookie(CefBrowser browser, CefFrame frame, CefRequest request, CefCookie cookie) {
+            return security.allowsCookies(request.getURL(), documentUrl(request));
+        }
+
+        @Override
+        public boolean canSaveCookie(CefBrowser browser, CefFrame frame, CefRequest request, CefResponse response,
+                CefCookie cookie) {
+            return security.allowsCookies(request.getURL(), documentUrl(request));
+        }
+    };
+
+    // Stateless, so one instance serves every request
+    private final CefResourceRequestHandler resourceHandler = new CefResourceRequestHandlerAdapter() {
+        @Override
+        public boolean onBeforeResourceLoad(CefBrowser browser, CefFrame frame, CefRequest request) {
+            // Returning true cancels the request
+            return shouldCancel(request.getURL(), documentUrl(request), request.getResourceType(),
+                    statsFor(browser));
+        }
+
+        @Override
+        public CefCookieAccessFilter getCookieAccessFilter(CefBrowser browser, CefFrame frame, CefRequest request) {
+            return cookieFilter;
+        }
+    };
+
+    @Override
+    public CefResourceRequestHandler getResourceRequestHandler(CefBrowser browser, CefFrame frame,
+            CefRequest request, boolean isNavigation, boolean isDownload, String requestInitiator,
+            BoolRef disableDefaultHandling) {
+        if (isDownload || request.getResourceType() == CefRequest.ResourceType.RT_MAIN_FRAME)
+            return null;
+        return resourceHandler;
+    }
+
+    /**
+     * Whether a subresource request should be cancelled
+     *
+     * @param documentUrl URL of the top-level page, or null if unknown
+     */
+    boolean shouldCancel(String url, String documentUrl, CefRequest.ResourceType resourceType,
+            SecurityStats stats) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://")
+                || url.startsWith("ws://") || url.startsWith("wss://")))
+            return false;
+
+        RequestType type = url.startsWith("ws") ? RequestType.WEBSOCKET : toRequestType(resourceType);
+        if (security.shouldBlockRequest(url, documentUrl, type)) {
+            blockedCount.increment();
+            stats.recordBlock(ParsedUrl.parse(url).host(), type);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Statistics view for a tab's browser
+     */
+    SecurityStats statsFor(CefBrowser browser) {
+        if (browser == null)
+            return SecurityStats.global();
+        return tabStats.computeIfAbsent(browser, b -> SecurityStats.forTab());
+    }
+
+    /**
+     * Drop a closed tab's statistics (its events stay in the global view)
+     */
+    void forget(CefBrowser browser) {
+        tabStats.remove(browser);
+    }
+
+    /**
+     * Number of requests cancelled since startup
+     */
+    long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    /**
+     * The page a subresource belongs to: CEF's first-party URL, else the referrer
+     */
+    private static String documentUrl(CefRequest request) {
+        String firstParty = request.getFirstPartyForCookies();
+        if (firstParty != null && !firstParty.isEmpty())
+            return firstParty;
+        String referrer = request.getReferrerURL();
+        return referrer != null && !referrer.isEmpty() ? referrer : null;
+    }
+
+    /**
+     * Map Chromium's resource types onto filter-list request types
+     */
+    static RequestType toRequestType(CefRequest.ResourceType type) {
+        if (type == null)
+            return RequestType.OTHER;
+        switch (type) {
+            case RT_MAIN_FRAME:
+                return RequestType.DOCUMENT;
+            case RT_SUB_FRAME:
+                return RequestType.SUBDOCUMENT;
+            case RT_SCRIPT:
+            case RT_WORKER:
+            case RT_SHARED_WORKER:
+            case RT_SERVICE_WORKER:
+                return RequestType.SCRIPT;
+            case RT_STYLESHEET:
+                return RequestType.STYLESHEET;
+            case RT_IMAGE:
+            case RT_FAVICON:
+                return RequestType.IMAGE;
+            case RT_FONT_RESOURCE:
+                return RequestType.FONT;
+            case RT_MEDIA:
+                return RequestType.MEDIA;
+            case RT_XHR:
+                return RequestType.XMLHTTPREQUEST;
+            case RT_PING:
+            case RT_CSP_REPORT:
+                return RequestType.PING;
+            default:
+                return RequestType.OTHER;
+        }
+    }
+}
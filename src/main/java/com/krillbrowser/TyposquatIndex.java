@@ -0,0 +1,243 @@
+package com.krillbrowser;
+
+import java.util.*;
+
+/**
+ * TyposquatIndex - Finds the popular domain a typed domain is closest to
+ *
+ * Distances are Damerau-Levenshtein: insertions, deletions, substitutions
+ * and transpositions of adjacent characters each cost one.
+ *
+ * Lookups use symmetric deletion (as in SymSpell): two strings within k
+ * edits of each other share a string reachable from both by deleting at
+ * most k characters. Every indexed domain is filed under the hash of each
+ * of its deletion variants, and a query looks up the hashes of its own
+ * variants; only the domains found there are compared exactly. Variants
+ * are taken from the first PREFIX characters only, which keeps them to a
+ * few dozen per domain while still finding every match (the tail of two
+ * close strings lines up again once the prefixes are cut).
+ *
+ * Postings are flat int arrays grouped by hash bucket, built once and only
+ * read afterwards, so the index can be shared between threads. A lookup
+ * against 100k domains touches a few dozen buckets instead of computing
+ * 100k distances.
+ */
+final class TyposquatIndex {
+
+    private static final int ALPHABET = 128;
+    // Deletions are generated from this many leading characters
+    private static final int PREFIX = 7;
+    static final int MAX_DISTANCE = 2;
+
+    private final String[] terms;
+    private final int size;
+    private final int maxLength;
+    // Domains filed under bucket b are postings[bucketStart[b] .. bucketStart[b + 1])
+    private final int[] bucketStart;
+    private final int[] postings;
+    private final int bucketMask;
+
+    /**
+     * Domains in order of preference: on a tie, the earlier one is reported
+     */
+    TyposquatIndex(Collection<String> domains) {
+        List<String> accepted = new ArrayList<>(domains.size());
+        Set<String> seen = new HashSet<>();
+        int longest = 0;
+        for (String domain : domains) {
+            if (isAscii(domain) && seen.add(domain)) {
+                accepted.add(domain);
+                longest = Math.max(longest, domain.length());
+            }
+        }
+        terms = accepted.toArray(new String[0]);
+        size = terms.length;
+        maxLength = longest;
+
+        int[] variants = new int[variantCount(PREFIX, MAX_DISTANCE)];
+        int total = 0;
+        for (String term : terms) {
+            total += deletionHashes(term, MAX_DISTANCE, variants);
+        }
+        int buckets = Integer.highestOneBit(Math.max(1, total)) * 2;
+        bucketMask = buckets - 1;
+
+        // Counting pass, then fill: postings stay grouped by bucket
+        bucketStart = new int[buckets + 1];
+        for (String term : terms) {
+            int count = deletionHashes(term, MAX_DISTANCE, variants);
+            for (int i = 0; i < count; i++) {
+                bucketStart[(variants[i] & bucketMask) + 1]++;
+            }
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        postings = new int[total];
+        int[] fill = Arrays.copyOf(bucketStart, buckets);
+        for (int t = 0; t < terms.length; t++) {
+            int count = deletionHashes(terms[t], MAX_DISTANCE, variants);
+            for (int i = 0; i < count; i++) {
+                postings[fill[variants[i] & bucketMask]++] = t;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The indexed domain closest to domain within maxDistance edits (at most
+     * MAX_DISTANCE), or null. Distance 0 means domain itself is indexed.
+     */
+    Match closest(String domain, int maxDistance) {
+        maxDistance = Math.min(maxDistance, MAX_DISTANCE);
+        if (size == 0 || !isAscii(domain))
+            return null;
+
+        int[] variants = new int[variantCount(PREFIX, maxDistance)];
+        int count = deletionHashes(domain, maxDistance, variants);
+        int[] table = new int[(domain.length() + 2) * (maxLength + 2)];
+        int[] lastRow = new int[ALPHABET];
+
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int v = 0; v < count; v++) {
+            int bucket = variants[v] & bucketMask;
+            for (int p = bucketStart[bucket]; p < bucketStart[bucket + 1]; p++) {
+                int t = postings[p];
+                String term = terms[t];
+                if (t == best || Math.abs(term.length() - domain.length()) > Math.min(maxDistance, bestDistance))
+                    continue;
+                int d = distance(domain, term, table, lastRow);
+                if (d < bestDistance || (d == bestDistance && t < best)) {
+                    best = t;
+                    bestDistance = d;
+                }
+            }
+        }
+        return best >= 0 ? new Match(terms[best], bestDistance) : null;
+    }
+
+    private static int variantCount(int length, int deletions) {
+        int count = 1;
+        int combinations = 1;
+        for (int k = 1; k <= deletions; k++) {
+            combinations = combinations * (length - k + 1) / k;
+            count += combinations;
+        }
+        return count;
+    }
+
+    /**
+     * Hashes of the distinct strings left by deleting up to deletions
+     * characters from s's prefix. Returns how many were written to out.
+     */
+    private static int deletionHashes(String s, int deletions, int[] out) {
+        int prefix = Math.min(PREFIX, s.length());
+        int count = 0;
+        out[count++] = hash(s, prefix, -1, -1);
+        if (deletions >= 1) {
+            for (int i = 0; i < prefix; i++) {
+                out[count++] = hash(s, prefix, i, -1);
+            }
+        }
+        if (deletions >= 2) {
+            for (int i = 0; i < prefix; i++) {
+                for (int j = i + 1; j < prefix; j++) {
+                    out[count++] = hash(s, prefix, i, j);
+                }
+            }
+        }
+        // Deleting either of two equal neighbours gives the same string
+        Arrays.sort(out, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || out[i] != out[distinct - 1])
+                out[distinct++] = out[i];
+        }
+        return distinct;
+    }
+
+    // Hash of s[0, prefix) without the characters at skip1 and skip2
+    private static int hash(String s, int prefix, int skip1, int skip2) {
+        int h = 0;
+        for (int i = 0; i < prefix; i++) {
+            if (i != skip1 && i != skip2)
+                h = 31 * h + s.charAt(i);
+        }
+        // Spread the bits, the low ones pick the bucket
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Unrestricted Damerau-Levenshtein distance between two ASCII strings
+     * (Lowrance-Wagner). table holds at least (a + 2) x (b + 2) entries;
+     * lastRow (the last row each character of a was seen in) must be zeroed
+     * and is left zeroed.
+     */
+    static int distance(String a, String b, int[] table, int[] lastRow) {
+        int rows = a.length() + 2;
+        int cols = b.length() + 2;
+        int infinity = a.length() + b.length();
+        int[] d = table;
+
+        d[0] = infinity;
+        for (int i = 0; i <= a.length(); i++) {
+            d[(i + 1) * cols] = infinity;
+            d[(i + 1) * cols + 1] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[j + 1] = infinity;
+            d[cols + j + 1] = j;
+        }
+
+        for (int i = 1; i < rows - 1; i++) {
+            char ca = a.charAt(i - 1);
+            int lastMatchColumn = 0;
+            for (int j = 1; j < cols - 1; j++) {
+                char cb = b.charAt(j - 1);
+                int k = lastRow[cb];
+                int l = lastMatchColumn;
+                int cost = 1;
+                if (ca == cb) {
+                    cost = 0;
+                    lastMatchColumn = j;
+                }
+                int substitute = d[i * cols + j] + cost;
+                int insert = d[(i + 1) * cols + j] + 1;
+                int delete = d[i * cols + j + 1] + 1;
+                int transpose = d[k * cols + l] + (i - k - 1) + 1 + (j - l - 1);
+                d[(i + 1) * cols + j + 1] = Math.min(Math.min(substitute, insert), Math.min(delete, transpose));
+            }
+            lastRow[ca] = i;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            lastRow[a.charAt(i)] = 0;
+        }
+        return d[(rows - 1) * cols + cols - 1];
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= ALPHABET)
+                return false;
+        }
+        return !s.isEmpty();
+    }
+
+    /**
+     * Closest indexed domain and its distance
+     */
+    static final class Match {
+        final String domain;
+        final int distance;
+
+        Match(String domain, int distance) {
+            this.domain = domain;
+            this.distance = distance;
+        }
+    }
+}
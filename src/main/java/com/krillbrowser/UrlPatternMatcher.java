@@ -0,0 +1,142 @@
+package com.krillbrowser;
+
+import java.util.*;
+
+/**
+ * UrlPatternMatcher - Ordered keyword patterns matched in one pass
+ *
+ * A pattern is a list of words that must appear in order, written the way
+ * the regex that finds them would be: "login.*verify". Every word of every
+ * pattern is compiled into one AhoCorasickMatcher, and the scan keeps one
+ * bit per (pattern, word) meaning "the words before this one were seen in
+ * order". So a URL is read once, left to right, whatever the number of
+ * patterns, with no backtracking and no allocation.
+ *
+ * Words may not overlap (no word contains another, and no word's suffix is
+ * another word's prefix), which makes "seen earlier" the same as "ended
+ * before this one started". At most 64 words in total.
+ */
+final class UrlPatternMatcher {
+
+    private final String[] patterns;
+    private final AhoCorasickMatcher words;
+    // For each word: bit positions of the (pattern, index) slots it fills
+    private final int[][] slots;
+    // Slot bits that complete a pattern, and the pattern each one completes
+    private final long finalSlots;
+    private final int[] slotPattern;
+    // Slots that are the first word of their pattern, set before scanning
+    private final long firstSlots;
+
+    private UrlPatternMatcher(String[] patterns, AhoCorasickMatcher words, int[][] slots, long finalSlots,
+            int[] slotPattern, long firstSlots) {
+        this.patterns = patterns;
+        this.words = words;
+        this.slots = slots;
+        this.finalSlots = finalSlots;
+        this.slotPattern = slotPattern;
+        this.firstSlots = firstSlots;
+    }
+
+    static UrlPatternMatcher compile(String... patterns) {
+        List<String> wordList = new ArrayList<>();
+        List<List<Integer>> wordSlots = new ArrayList<>();
+        List<Integer> slotPattern = new ArrayList<>();
+        long finalSlots = 0;
+        long firstSlots = 0;
+
+        for (int p = 0; p < patterns.length; p++) {
+            String[] parts = patterns[p].toLowerCase().split("\\.\\*");
+            for (int j = 0; j < parts.length; j++) {
+                String word = parts[j];
+                if (word.isEmpty())
+                    throw new IllegalArgumentException("Empty word in pattern: " + patterns[p]);
+                int slot = slotPattern.size();
+                if (slot == 64)
+                    throw new IllegalArgumentException("More than 64 pattern words");
+                slotPattern.add(p);
+                if (j == 0)
+                    firstSlots |= 1L << slot;
+                if (j == parts.length - 1)
+                    finalSlots |= 1L << slot;
+
+                int index = wordList.indexOf(word);
+                if (index < 0) {
+                    index = wordList.size();
+                    wordList.add(word);
+                    wordSlots.add(new ArrayList<>());
+                }
+                wordSlots.get(index).add(slot);
+            }
+        }
+        checkNoOverlap(wordList);
+
+        AhoCorasickMatcher automaton = AhoCorasickMatcher.compile(wordList);
+        int[][] slots = new int[wordList.size()][];
+        // compile() numbers the (distinct, lowercase) words in insertion order
+        for (int w = 0; w < wordList.size(); w++) {
+            List<Integer> uses = wordSlots.get(w);
+            // Later slots first, so one occurrence of a repeated word only
+            // advances a pattern by one step
+            int[] ordered = new int[uses.size()];
+            for (int i = 0; i < ordered.length; i++) {
+                ordered[i] = uses.get(ordered.length - 1 - i);
+            }
+            slots[w] = ordered;
+        }
+
+        int[] slotPatterns = new int[slotPattern.size()];
+        for (int i = 0; i < slotPatterns.length; i++) {
+            slotPatterns[i] = slotPattern.get(i);
+        }
+        return new UrlPatternMatcher(patterns.clone(), automaton, slots, finalSlots, slotPatterns, firstSlots);
+    }
+
+    private static void checkNoOverlap(List<String> words) {
+        for (String a : words) {
+            for (String b : words) {
+                if (a != b && a.contains(b))
+                    throw new IllegalArgumentException("Pattern word '" + b + "' is inside '" + a + "'");
+                // A proper suffix of a that is also a prefix of b
+                for (int length = 1; length < Math.min(a.length(), b.length()); length++) {
+                    if (a.regionMatches(a.length() - length, b, 0, length))
+                        throw new IllegalArgumentException("Pattern words '" + a + "' and '" + b + "' overlap");
+                }
+            }
+        }
+    }
+
+    /**
+     * Index of the first pattern completed in text[start, end), or -1
+     */
+    int find(CharSequence text, int start, int end) {
+        if (words.isEmpty())
+            return -1;
+
+        long seen = firstSlots;
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            state = words.advance(state, text.charAt(i));
+            int word = words.matchAt(state);
+            if (word < 0)
+                continue;
+            for (int slot : slots[word]) {
+                long bit = 1L << slot;
+                if ((seen & bit) == 0)
+                    continue;
+                if ((finalSlots & bit) != 0)
+                    return slotPattern[slot];
+                seen |= bit << 1;
+            }
+        }
+        return -1;
+    }
+
+    int find(CharSequence text) {
+        return find(text, 0, text.length());
+    }
+
+    String pattern(int index) {
+        return patterns[index];
+    }
+}
@@ -0,0 +1,179 @@
+package com.krillbrowser;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VerdictCache - Bounded, concurrent LRU cache of per-host policy verdicts
+ *
+ * A page load sends hundreds of requests to the same few hosts; caching the
+ * host-level part of each check avoids re-evaluating it every time.
+ *
+ * All caches share one global generation counter. Any rule change (blocklist
+ * edit, profile switch, new phishing domain) bumps it, and entries stored
+ * under an older generation are treated as misses, so no cache needs to be
+ * cleared explicitly.
+ *
+ * The cache is split into independently locked LRU segments to keep
+ * contention low. Size per cache: krill.verdictCache.size (default 4096).
+ */
+public final class VerdictCache<V> {
+
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final List<VerdictCache<?>> CACHES = new CopyOnWriteArrayList<>();
+    private static final int SEGMENTS = 16;
+
+    static final int DEFAULT_CAPACITY = Integer.getInteger("krill.verdictCache.size", 4096);
+
+    private final String name;
+    private final Segment<V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    VerdictCache(String name, int capacity) {
+        this.name = name;
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+        CACHES.add(this);
+    }
+
+    /**
+     * Current rule generation; read it before computing a verdict to store
+     */
+    static long currentGeneration() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Invalidate every cached verdict in every cache
+     */
+    static void bumpGeneration() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Empty every cache, freeing the memory that stale entries still hold
+     */
+    public static void clearAll() {
+        bumpGeneration();
+        for (VerdictCache<?> cache : CACHES) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * All caches created so far, for statistics
+     */
+    public static List<VerdictCache<?>> getAll() {
+        return Collections.unmodifiableList(CACHES);
+    }
+
+    /**
+     * Cached verdict for key, or null on a miss or a stale entry
+     */
+    V get(String key) {
+        Segment<V> segment = segmentFor(key);
+        long generation = GENERATION.get();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null && entry.generation == generation) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                segment.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store a verdict computed under the given generation. Verdicts computed
+     * before a concurrent rule change are dropped instead of cached.
+     */
+    void put(String key, V value, long generation) {
+        if (generation != GENERATION.get())
+            return;
+        Segment<V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Entry<>(value, generation));
+        }
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<V> segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long generation;
+
+        Entry(V value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Access-ordered map that evicts its least recently used entry when full
+     */
+    private static final class Segment<V> extends LinkedHashMap<String, Entry<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -3,6 +3,7 @@ module KrillBrowser {
     requires javafx.web;
     requires javafx.media;
     requires java.net.http;
+    requires java.management;
 
     exports com.krillbrowser;
 }